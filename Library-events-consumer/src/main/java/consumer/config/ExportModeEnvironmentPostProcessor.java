@@ -0,0 +1,32 @@
+package consumer.config;
+
+import consumer.service.LibraryEventsExportRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+
+/*
+    CLI export mode (see LibraryEventsExportRunner) : when library-events.export.file is set, however it is set
+    (--library-events.export.file=..., -Dlibrary-events.export.file=..., LIBRARY_EVENTS_EXPORT_FILE=..., application.yml),
+    the application starts without the web server and without the Kafka listeners.
+
+    The defaults are added last, so an explicit spring.main.web-application-type or library-events.listener.auto-startup still wins.
+    Registered in META-INF/spring.factories, it runs before SpringApplication binds spring.main.* and before any bean is created.
+*/
+public class ExportModeEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    public static final String PROPERTY_SOURCE_NAME = "libraryEventsExportMode";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.getProperty(LibraryEventsExportRunner.EXPORT_FILE_PROPERTY) == null) {
+            return;
+        }
+        environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME, Map.of(
+                "spring.main.web-application-type", "none",
+                "library-events.listener.auto-startup", "false")));
+    }
+}
@@ -1,7 +1,12 @@
 package consumer.config;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import consumer.service.AppliedOffsetWatermark;
+import consumer.service.FailureRecorder;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
@@ -10,14 +15,28 @@ import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.backoff.FixedBackOff;
 
 /*
 factory.setConcurrency(3) :
     here the  .setConcurrency() is a method which we can use in order to configure multiple Kafka listeners from the same application itself,
     in our Kafka Topic we have 3 partitions, so I'm going to provide the value as three So it is going to spawn three threads with the same instance of the Kafka listener.
+
+factory.setAutoStartup(autoStartup) :
+    library-events.listener.auto-startup=false creates the listener containers without starting them, this is used by the CLI export mode.
+
+factory.setCommonErrorHandler(errorHandler(failureRecorder)) :
+    once the retries are exhausted, the failed record is handed to the FailureRecorder, which queues it and returns right away,
+    the FailureRecord rows are inserted in batches by its own thread, so a failure storm doesn't add a database insert per record on the listener threads.
+
+@EnableScheduling :
+    needed by the DatabaseHealthPartitionGovernor, which checks the database health periodically to pause/resume the listener partitions.
 */
 
 @Configuration
+@EnableScheduling
 //@EnableKafka  // this annotation was required in previous version of kafka, to make sure the consumer that
 // we are going to build is going to be automatically spun up when you start up the application.
 @Slf4j
@@ -27,11 +46,28 @@ public class LibraryEventsConsumerConfig {
     @ConditionalOnMissingBean(name = "kafkaListenerContainerFactory")
     ConcurrentKafkaListenerContainerFactory<?, ?> kafkaListenerContainerFactory(
             ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
-            ConsumerFactory<Object, Object> kafkaConsumerFactory) {
+            ConsumerFactory<Object, Object> kafkaConsumerFactory,
+            @Value("${library-events.listener.auto-startup:true}") boolean autoStartup,
+            FailureRecorder failureRecorder,
+            AppliedOffsetWatermark appliedOffsetWatermark) {
         ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         configurer.configure(factory, kafkaConsumerFactory);
         factory.setConcurrency(3);
+        factory.setAutoStartup(autoStartup);
+        factory.setCommonErrorHandler(errorHandler(failureRecorder, appliedOffsetWatermark));
 
         return factory;
     }
+
+    private DefaultErrorHandler errorHandler(FailureRecorder failureRecorder, AppliedOffsetWatermark appliedOffsetWatermark) {
+        // retried twice, one second apart, then recorded as a FailureRecord (asynchronously, see FailureRecorder),
+        // and marked as failed in the AppliedOffsetWatermark, so a client waiting for this offset isn't told it is applied.
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler((consumerRecord, exception) -> {
+            failureRecorder.record(consumerRecord, exception);
+            appliedOffsetWatermark.fail(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()), consumerRecord.offset());
+        }, new FixedBackOff(1000L, 2));
+        // these are not going to succeed on a retry, they are recorded straight away.
+        errorHandler.addNotRetryableExceptions(IllegalArgumentException.class, JsonProcessingException.class);
+        return errorHandler;
+    }
 }
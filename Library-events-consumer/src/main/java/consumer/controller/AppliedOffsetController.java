@@ -0,0 +1,75 @@
+package consumer.controller;
+
+import consumer.service.AppliedOffsetWatermark;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/*
+    Read-your-writes for the clients of the producer :
+        the POST /v1/libraryevent response has the Library-Event-Topic / Library-Event-Partition / Library-Event-Offset headers,
+        the client passes them here and the request is held until the library event is applied (long poll), or the timeout is over.
+
+    The answer is 200, "applied" tells whether the offset was applied before the timeout, so the client can simply call again,
+    "failed" that the library event at this offset was given up on (the error handler recorded it as a FailureRecord), calling again won't help.
+    It's 404 when the partition is not assigned to this instance (or is revoked while waiting), the client has to ask the instance that owns it.
+    The CompletableFuture releases the request thread while waiting (spring.mvc.async.request-timeout is -1, the timeout is ours).
+
+    curl "http://localhost:8081/v1/libraryevents/applied-offsets"
+    curl "http://localhost:8081/v1/libraryevents/applied-offsets/library-events/1?offset=41&timeoutMs=30000"
+*/
+@RestController
+@Slf4j
+public class AppliedOffsetController {
+
+    private static final long MAX_TIMEOUT_MS = 60_000;
+
+    @Autowired
+    private AppliedOffsetWatermark appliedOffsetWatermark;
+
+    public record AppliedOffset(String topic, int partition, long offset, boolean applied, boolean failed, long appliedOffset) {
+    }
+
+    @GetMapping("/v1/libraryevents/applied-offsets")
+    public List<AppliedOffset> appliedOffsets() {
+        return appliedOffsetWatermark.appliedOffsets().entrySet().stream()
+                .map(entry -> new AppliedOffset(entry.getKey().topic(), entry.getKey().partition(), entry.getValue(), true, false, entry.getValue()))
+                .toList();
+    }
+
+    @GetMapping("/v1/libraryevents/applied-offsets/{topic}/{partition}")
+    public CompletableFuture<ResponseEntity<AppliedOffset>> awaitApplied(@PathVariable String topic,
+                                                                         @PathVariable int partition,
+                                                                         @RequestParam long offset,
+                                                                         @RequestParam(defaultValue = "30000") long timeoutMs) {
+        if (offset < 0 || timeoutMs < 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        Duration timeout = Duration.ofMillis(Math.min(timeoutMs, MAX_TIMEOUT_MS));
+        log.debug("Waiting up to {} for the offset {} of {} to be applied", timeout, offset, topicPartition);
+
+        return appliedOffsetWatermark.awaitApplied(topicPartition, offset, timeout)
+                .map(waiter -> waiter.thenApply(done -> response(topicPartition, offset)))
+                .orElseGet(() -> CompletableFuture.completedFuture(ResponseEntity.notFound().build()));
+    }
+
+    private ResponseEntity<AppliedOffset> response(TopicPartition topicPartition, long offset) {
+        var outcome = appliedOffsetWatermark.outcome(topicPartition, offset);
+        var appliedOffset = appliedOffsetWatermark.appliedOffset(topicPartition);
+        if (outcome.isEmpty() || appliedOffset.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(new AppliedOffset(topicPartition.topic(), topicPartition.partition(), offset,
+                outcome.get() == AppliedOffsetWatermark.Outcome.APPLIED, outcome.get() == AppliedOffsetWatermark.Outcome.FAILED, appliedOffset.get()));
+    }
+}
@@ -0,0 +1,42 @@
+package consumer.controller;
+
+import consumer.service.LibraryEventsExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/*
+    StreamingResponseBody :
+        the export is written straight to the response while the library events are read from the database,
+        nothing is buffered, so the export can be as big as the table.
+
+    curl "http://localhost:8081/v1/libraryevents/export" > library-events.ndjson
+    curl "http://localhost:8081/v1/libraryevents/export?format=BINARY" > library-events.bin
+    curl "http://localhost:8081/v1/libraryevents/export?replayTopic=library-events.replay&replayRatePerSecond=200" > /dev/null
+*/
+@RestController
+@Slf4j
+public class LibraryEventsExportController {
+
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @Autowired
+    private LibraryEventsExportService libraryEventsExportService;
+
+    @GetMapping("/v1/libraryevents/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "NDJSON") LibraryEventsExportService.Format format,
+                                                        @RequestParam(required = false) String replayTopic,
+                                                        @RequestParam(defaultValue = "100") int replayRatePerSecond) {
+        log.info("Export of the library events as {} , replay topic : {} ", format, replayTopic);
+
+        StreamingResponseBody body = outputStream -> libraryEventsExportService.export(outputStream, format, replayTopic, replayRatePerSecond);
+        return ResponseEntity.ok()
+                .contentType(format == LibraryEventsExportService.Format.NDJSON ? NDJSON : MediaType.APPLICATION_OCTET_STREAM)
+                .body(body);
+    }
+}
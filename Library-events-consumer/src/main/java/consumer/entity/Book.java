@@ -1,5 +1,6 @@
 package consumer.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
@@ -21,5 +22,6 @@ public class Book {
     private String bookAuthor;
     @OneToOne
     @JoinColumn(name = "libraryEventId")
+    @JsonIgnore // the library event already holds the book, so it's written as {"libraryEventId", "libraryEventType", "book": {...}}
     private LibraryEvent libraryEvent;
 }
\ No newline at end of file
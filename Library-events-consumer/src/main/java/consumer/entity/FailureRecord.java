@@ -1,8 +1,10 @@
 package consumer.entity;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,14 +17,20 @@ import lombok.NoArgsConstructor;
 @Builder
 @Entity
 public class FailureRecord {
+
+    // the exception text is cut to this length by the FailureRecorder, a jackson exception echoes the whole payload in its message.
+    public static final int EXCEPTION_LENGTH = 1000;
+
     @Id
     @GeneratedValue
     private Integer bookId;
     private String topic;
     private Integer key_value;
+    @Lob // the whole payload of the library event, a long book name is enough to go past a varchar(255).
     private String errorRecord;
     private Integer partition;
     private Long offset_value;
+    @Column(length = EXCEPTION_LENGTH)
     private String exception;
     private String status;
 
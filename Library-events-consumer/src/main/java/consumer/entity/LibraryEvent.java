@@ -2,6 +2,8 @@ package consumer.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 @AllArgsConstructor
 @NoArgsConstructor
@@ -11,7 +13,11 @@ import lombok.*;
 public class LibraryEvent {
 
     @Id
-    @GeneratedValue
+    @GeneratedValue(generator = "library-event-id")
+    // same sequence as a plain @GeneratedValue, the generator only adds the shard index to the id when the consumer is sharded.
+    @GenericGenerator(name = "library-event-id", strategy = "consumer.jpa.ShardAwareSequenceGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "LibraryEvent_SEQ"),
+            @Parameter(name = "increment_size", value = "50")})
     private Integer libraryEventId;
     @Enumerated(EnumType.STRING)
     private LibraryEventType libraryEventType;
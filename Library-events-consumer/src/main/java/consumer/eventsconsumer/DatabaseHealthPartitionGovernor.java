@@ -0,0 +1,132 @@
+package consumer.eventsconsumer;
+
+import consumer.service.DatabaseHealthMonitor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+    Pauses the partitions of the library-events listener while the database is unhealthy, and resumes them one by one once it recovers.
+
+    container.pausePartition(..) :
+        the pause is applied by the consumer thread itself on its next poll, the consumer keeps calling poll() (which returns
+        no records for the paused partitions), so we stay inside max.poll.interval.ms and no rebalance is triggered.
+
+    Thresholds (hysteresis) :
+        pause  -> error rate >= pause-error-rate OR p95 latency >= pause-latency-ms (with at least min-samples in the window).
+        resume -> error rate <= resume-error-rate AND p95 latency <= resume-latency-ms, or the window is empty because nothing was saved.
+        anything in between keeps the current state.
+
+    Only one partition is resumed every resume-step-ms, so the database is not hit by the whole backlog at once.
+*/
+@Component
+@Slf4j
+public class DatabaseHealthPartitionGovernor {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final DatabaseHealthMonitor databaseHealthMonitor;
+
+    private final int minSamples;
+    private final double pauseErrorRate;
+    private final long pauseLatencyMs;
+    private final double resumeErrorRate;
+    private final long resumeLatencyMs;
+    private final long resumeStepNanos;
+    private final LongSupplier nanoClock;
+
+    private long lastResumeNanos;
+
+    @Autowired
+    public DatabaseHealthPartitionGovernor(KafkaListenerEndpointRegistry registry,
+                                           DatabaseHealthMonitor databaseHealthMonitor,
+                                           @Value("${library-events.db-health.min-samples:20}") int minSamples,
+                                           @Value("${library-events.db-health.pause-error-rate:0.5}") double pauseErrorRate,
+                                           @Value("${library-events.db-health.pause-latency-ms:2000}") long pauseLatencyMs,
+                                           @Value("${library-events.db-health.resume-error-rate:0.1}") double resumeErrorRate,
+                                           @Value("${library-events.db-health.resume-latency-ms:500}") long resumeLatencyMs,
+                                           @Value("${library-events.db-health.resume-step-ms:5000}") long resumeStepMs) {
+        this(registry, databaseHealthMonitor, minSamples, pauseErrorRate, pauseLatencyMs, resumeErrorRate, resumeLatencyMs, resumeStepMs, System::nanoTime);
+    }
+
+    public DatabaseHealthPartitionGovernor(KafkaListenerEndpointRegistry registry, DatabaseHealthMonitor databaseHealthMonitor,
+                                           int minSamples, double pauseErrorRate, long pauseLatencyMs,
+                                           double resumeErrorRate, long resumeLatencyMs, long resumeStepMs, LongSupplier nanoClock) {
+        this.registry = registry;
+        this.databaseHealthMonitor = databaseHealthMonitor;
+        this.minSamples = minSamples;
+        this.pauseErrorRate = pauseErrorRate;
+        this.pauseLatencyMs = pauseLatencyMs;
+        this.resumeErrorRate = resumeErrorRate;
+        this.resumeLatencyMs = resumeLatencyMs;
+        this.resumeStepNanos = TimeUnit.MILLISECONDS.toNanos(resumeStepMs);
+        this.nanoClock = nanoClock;
+        this.lastResumeNanos = nanoClock.getAsLong() - resumeStepNanos;
+    }
+
+    @Scheduled(fixedDelayString = "${library-events.db-health.check-interval-ms:1000}")
+    public void checkDatabaseHealth() {
+        MessageListenerContainer container = registry.getListenerContainer(LibraryEventsConsumer.LISTENER_ID);
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+
+        Collection<TopicPartition> assignedPartitions = container.getAssignedPartitions();
+        if (assignedPartitions == null || assignedPartitions.isEmpty()) {
+            return;
+        }
+
+        DatabaseHealthMonitor.Snapshot snapshot = databaseHealthMonitor.snapshot();
+
+        if (isUnhealthy(snapshot)) {
+            pauseAll(container, assignedPartitions, snapshot);
+        } else if (isHealthy(snapshot)) {
+            resumeOne(container, assignedPartitions, snapshot);
+        }
+    }
+
+    private boolean isUnhealthy(DatabaseHealthMonitor.Snapshot snapshot) {
+        return snapshot.samples() >= minSamples
+                && (snapshot.errorRate() >= pauseErrorRate || snapshot.p95LatencyMs() >= pauseLatencyMs);
+    }
+
+    private boolean isHealthy(DatabaseHealthMonitor.Snapshot snapshot) {
+        return snapshot.samples() == 0
+                || (snapshot.errorRate() <= resumeErrorRate && snapshot.p95LatencyMs() <= resumeLatencyMs);
+    }
+
+    private void pauseAll(MessageListenerContainer container, Collection<TopicPartition> assignedPartitions,
+                          DatabaseHealthMonitor.Snapshot snapshot) {
+        for (TopicPartition topicPartition : assignedPartitions) {
+            if (!container.isPartitionPauseRequested(topicPartition)) {
+                log.warn("Pausing partition {} , database is unhealthy : {} ", topicPartition, snapshot);
+                container.pausePartition(topicPartition);
+            }
+        }
+    }
+
+    private void resumeOne(MessageListenerContainer container, Collection<TopicPartition> assignedPartitions,
+                           DatabaseHealthMonitor.Snapshot snapshot) {
+        long now = nanoClock.getAsLong();
+        if (now - lastResumeNanos < resumeStepNanos) {
+            return;
+        }
+
+        for (TopicPartition topicPartition : assignedPartitions) {
+            if (container.isPartitionPauseRequested(topicPartition)) {
+                log.info("Resuming partition {} , database is healthy again : {} ", topicPartition, snapshot);
+                container.resumePartition(topicPartition);
+                lastResumeNanos = now;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package consumer.eventsconsumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import startup.StartupTrainingWorkload;
+
+/*
+    The class-data sharing training run (mvn -Pfast-startup package) has no broker, so no record ever reaches the listener and
+    exiting on ApplicationReadyEvent would leave out everything the first record loads (Jackson binding of the LibraryEvent,
+    the Hibernate insert path, the JDBC statements...), which is most of the time to the first processed record.
+
+    So the training run hands one NEW library event straight to the listener method, it is saved in the in-memory H2 database
+    of the local profile and is gone when the training run exits.
+*/
+@Component
+@Slf4j
+public class LibraryEventTrainingWorkload implements StartupTrainingWorkload {
+
+    private static final String LIBRARY_EVENT = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":123,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+    @Autowired
+    private LibraryEventsConsumer libraryEventsConsumer;
+
+    @Override
+    public void train() throws Exception {
+        libraryEventsConsumer.onMessage(new ConsumerRecord<>("library-events", 0, 0, null, LIBRARY_EVENT));
+    }
+}
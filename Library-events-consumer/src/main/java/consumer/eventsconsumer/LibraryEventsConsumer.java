@@ -1,13 +1,21 @@
 package consumer.eventsconsumer;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import consumer.service.AppliedOffsetWatermark;
 import consumer.service.LibraryEventsService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /*
 topics = {"library-events"}        // Kafka consumer can read from multiple topics, but for our use case, we are just reading from one topic.
 The producer has a concept of ProducerRecord, Likewise we have a ConsumerRecord too, and it's going to be of type, integer and string because that's what
@@ -18,19 +26,48 @@ which is the actual message that is being passed from the producer.
 
 // @KafkaListener annotation uses the ConcurrentMessageListenerContainer
                   with the ConcurrentMessageListenerContainer you can spin up multiple instances of the same Kafka MessageListenerContainer.
+
+id = LISTENER_ID, idIsGroup = false  // the id is used to look up the listener container from the KafkaListenerEndpointRegistry (to pause/resume partitions),
+                                      // idIsGroup = false so the group id still comes from spring.kafka.consumer.group-id.
+
+ConsumerSeekAware.onPartitionsAssigned  // called with the position of every assigned partition, it seeds the AppliedOffsetWatermark,
+                                        // everything before the position is already applied (by a previous run or another instance).
+ConsumerSeekAware.onPartitionsRevoked   // the partition is dropped from the AppliedOffsetWatermark, its waiting clients get a 404.
 */
 
 @Component
 @Slf4j
-public class LibraryEventsConsumer {
+public class LibraryEventsConsumer implements ConsumerSeekAware {
+
+    public static final String LISTENER_ID = "library-events-listener";
 
     @Autowired
     private LibraryEventsService libraryEventsService;
 
-    @KafkaListener(topics = {"library-events"})
+    @Autowired
+    private AppliedOffsetWatermark appliedOffsetWatermark;
+
+    // the time to the first processed record is what matters when we scale out on lag, the StartupTimeBenchmark looks for this log line.
+    private final AtomicBoolean firstRecordProcessed = new AtomicBoolean();
+
+    @KafkaListener(id = LISTENER_ID, idIsGroup = false, topics = {"library-events"})
     public void onMessage(ConsumerRecord<Integer, String> consumerRecord) throws JsonProcessingException {
 
         log.info("ConsumerRecord : {} ", consumerRecord);
         libraryEventsService.processLibraryEvent(consumerRecord);
+
+        if (firstRecordProcessed.compareAndSet(false, true)) {
+            log.info("First library event processed {} ms after the JVM started", ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        assignments.forEach(appliedOffsetWatermark::seed);
+    }
+
+    @Override
+    public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+        partitions.forEach(appliedOffsetWatermark::revoke);
     }
 }
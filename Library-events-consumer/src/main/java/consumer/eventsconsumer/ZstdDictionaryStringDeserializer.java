@@ -0,0 +1,129 @@
+package consumer.eventsconsumer;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdException;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    Value deserializer for the library events compressed by the producer's ZstdDictionaryStringSerializer.
+
+    The "zstd-dict-id" header tells which dictionary the value was compressed with, a record without that header
+    is a plain UTF-8 string (same as the StringDeserializer), so this deserializer can be used before the producer turns compression on.
+
+    Several dictionaries can be configured (comma separated), so the producer can move to a new dictionary while
+    records compressed with the old one are still in the topic :
+        library-events.zstd.dictionaries: classpath:library-events.zdict
+
+    Every Kafka consumer creates its own deserializer, so the decompression contexts are reused without any locking.
+
+    A malformed record (bad header, unknown or too big decompressed size, corrupted frame) is rejected with a SerializationException,
+    so the error handler treats it as a poison pill instead of allocating whatever size the record claims :
+        library-events.zstd.max-value-bytes: 1048576   (same as the default max.message.bytes of the broker)
+*/
+public class ZstdDictionaryStringDeserializer implements Deserializer<String> {
+
+    public static final String DICTIONARY_ID_HEADER = "zstd-dict-id";
+    public static final String DICTIONARIES_CONFIG = "library-events.zstd.dictionaries";
+    public static final String MAX_VALUE_BYTES_CONFIG = "library-events.zstd.max-value-bytes";
+
+    private int maxValueBytes = 1024 * 1024;
+
+    private final Map<Integer, ZstdDictDecompress> dictionaries = new HashMap<>();
+    private final Map<Integer, ZstdDecompressCtx> decompressCtxs = new HashMap<>();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object maxValue = configs.get(MAX_VALUE_BYTES_CONFIG);
+        if (maxValue != null) {
+            maxValueBytes = Integer.parseInt(maxValue.toString());
+        }
+        Object locations = configs.get(DICTIONARIES_CONFIG);
+        if (locations == null) {
+            return;
+        }
+        for (String location : locations.toString().split(",")) {
+            byte[] dictionaryBytes = loadDictionary(location.trim());
+            int dictionaryId = (int) Zstd.getDictIdFromDict(dictionaryBytes);
+            if (dictionaryId == 0) {
+                throw new ConfigException(DICTIONARIES_CONFIG, location, "not a trained zstd dictionary");
+            }
+            ZstdDictDecompress dictionary = new ZstdDictDecompress(dictionaryBytes);
+            dictionaries.put(dictionaryId, dictionary);
+            decompressCtxs.put(dictionaryId, new ZstdDecompressCtx().loadDict(dictionary));
+        }
+    }
+
+    @Override
+    public String deserialize(String topic, byte[] data) {
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String deserialize(String topic, Headers headers, byte[] data) {
+        Header header = headers.lastHeader(DICTIONARY_ID_HEADER);
+        if (data == null || header == null) {
+            return deserialize(topic, data);
+        }
+
+        if (header.value() == null || header.value().length != Integer.BYTES) {
+            throw new SerializationException("Invalid " + DICTIONARY_ID_HEADER + " header, expected " + Integer.BYTES + " bytes");
+        }
+        int dictionaryId = ByteBuffer.wrap(header.value()).getInt();
+        ZstdDecompressCtx decompressCtx = decompressCtxs.get(dictionaryId);
+        if (decompressCtx == null) {
+            throw new SerializationException("No zstd dictionary configured for the dictionary id " + dictionaryId);
+        }
+
+        // the producer always writes the content size in the frame, 0 means unknown (or not a zstd frame at all).
+        long originalSize = Zstd.decompressedSize(data);
+        if (originalSize <= 0 || originalSize > maxValueBytes) {
+            throw new SerializationException("Invalid zstd decompressed size " + originalSize + " (max " + maxValueBytes + " bytes)");
+        }
+        try {
+            return new String(decompressCtx.decompress(data, (int) originalSize), StandardCharsets.UTF_8);
+        } catch (ZstdException e) {
+            throw new SerializationException("Corrupted zstd library event : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        decompressCtxs.values().forEach(ZstdDecompressCtx::close);
+        decompressCtxs.clear();
+        dictionaries.values().forEach(ZstdDictDecompress::close);
+        dictionaries.clear();
+    }
+
+    // "classpath:library-events.zdict" or a path on the file system.
+    private static byte[] loadDictionary(String location) {
+        try {
+            if (location.startsWith("classpath:")) {
+                String resource = location.substring("classpath:".length());
+                try (InputStream inputStream = ZstdDictionaryStringDeserializer.class.getClassLoader().getResourceAsStream(resource)) {
+                    if (inputStream == null) {
+                        throw new ConfigException(DICTIONARIES_CONFIG, location, "resource not found");
+                    }
+                    return inputStream.readAllBytes();
+                }
+            }
+            return Files.readAllBytes(Path.of(location));
+        } catch (IOException e) {
+            throw new ConfigException(DICTIONARIES_CONFIG, location, "unable to read the dictionary : " + e.getMessage());
+        }
+    }
+}
@@ -1,7 +1,31 @@
 package consumer.jpa;
 
 import consumer.entity.LibraryEvent;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 public interface LibraryEventsRepository extends CrudRepository<LibraryEvent,Integer> {
+
+    String EXPORT_FETCH_SIZE = "500";
+
+    // walks all the library events with a database cursor (fetch size rows at a time) instead of loading everything like findAll().
+    // the book is fetched in the same query, and the stream has to be consumed (and closed) inside a read-only transaction.
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = EXPORT_FETCH_SIZE), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    @Query("select e from LibraryEvent e left join fetch e.book order by e.libraryEventId")
+    Stream<LibraryEvent> streamAllWithBook();
+
+    // the same library events, one page at a time after the given id (keyset pagination), every page can be read in its own short transaction.
+    @QueryHints(@QueryHint(name = HINT_READ_ONLY, value = "true"))
+    @Query("select e from LibraryEvent e left join fetch e.book where e.libraryEventId > :afterId order by e.libraryEventId")
+    List<LibraryEvent> findPageWithBook(@Param("afterId") int afterId, Pageable pageable);
 }
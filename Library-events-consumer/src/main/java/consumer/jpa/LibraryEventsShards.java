@@ -0,0 +1,156 @@
+package consumer.jpa;
+
+import com.zaxxer.hikari.HikariDataSource;
+import consumer.entity.Book;
+import consumer.entity.LibraryEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.JpaProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.EntityManagerFactoryBuilder;
+import org.springframework.dao.support.PersistenceExceptionTranslationInterceptor;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.persistenceunit.PersistenceManagedTypes;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionManager;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Spreads the library events (and their book) over N databases, so the writes are not bottlenecked on a single datasource.
+
+    library-events.sharding.urls is a comma separated list of JDBC urls, one per shard, every shard gets its own
+    connection pool (Hikari), its own EntityManagerFactory (same JPA settings as the default one), its own JpaTransactionManager,
+    and its own LibraryEventsRepository. Without urls there is a single shard : the default datasource and repository.
+
+    Routing :
+        NEW library events   -> shard (Kafka partition % N), the listener threads own different partitions, so they mostly write to different shards.
+        everything by id     -> shard (libraryEventId % N), the ShardAwareSequenceGenerator puts the shard index in every generated id.
+
+    The FailureRecord stays on the default datasource, it's not part of the library events write path.
+
+    The shard of a library event is written in its id (id % N), so N is fixed for the life of the data :
+        - sharding can only be turned on with fresh (empty) shard databases, the library events already in the default datasource
+          are not moved (their ids don't follow id % N) and are not read anymore.
+        - the urls can't be added, removed or reordered afterwards, every existing id would be routed to the wrong shard.
+    There is no migration path (re-sharding would mean giving every library event a new id, and the ids are known downstream).
+    The ids stay ints : with N shards every shard has Integer.MAX_VALUE / N ids (see ShardAwareSequenceGenerator).
+*/
+@Component
+@Slf4j
+public class LibraryEventsShards implements DisposableBean {
+
+    // EntityManagerFactory settings read by the ShardAwareSequenceGenerator.
+    public static final String SHARD_COUNT_SETTING = "library-events.sharding.count";
+    public static final String SHARD_INDEX_SETTING = "library-events.sharding.index";
+
+    public record Shard(int index, LibraryEventsRepository repository, EntityManager entityManager, PlatformTransactionManager transactionManager) {
+    }
+
+    private final List<Shard> shards = new ArrayList<>();
+    private final List<EntityManagerFactory> entityManagerFactories = new ArrayList<>();
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+
+    @Autowired
+    public LibraryEventsShards(@Value("${library-events.sharding.urls:}") List<String> urls,
+                               @Value("${library-events.sharding.username:sa}") String username,
+                               @Value("${library-events.sharding.password:}") String password,
+                               @Value("${library-events.sharding.maximum-pool-size:10}") int maximumPoolSize,
+                               LibraryEventsRepository libraryEventsRepository,
+                               EntityManager entityManager,
+                               PlatformTransactionManager transactionManager,
+                               EntityManagerFactoryBuilder entityManagerFactoryBuilder,
+                               JpaProperties jpaProperties,
+                               HibernateProperties hibernateProperties) {
+        if (urls.isEmpty()) {
+            shards.add(new Shard(0, libraryEventsRepository, entityManager, transactionManager));
+            return;
+        }
+
+        // same hibernate settings (naming strategy, ddl-auto ...) as the default EntityManagerFactory built by spring boot.
+        Map<String, Object> jpaSettings = hibernateProperties.determineHibernateProperties(jpaProperties.getProperties(), new HibernateSettings());
+        try {
+            for (int index = 0; index < urls.size(); index++) {
+                shards.add(createShard(index, urls.size(), urls.get(index).trim(), username, password, maximumPoolSize,
+                        entityManagerFactoryBuilder, jpaSettings));
+            }
+        } catch (RuntimeException e) {
+            destroy();
+            throw e;
+        }
+        log.info("Library events sharded over {} datasource(s)", shards.size());
+    }
+
+    private Shard createShard(int index, int count, String url, String username, String password, int maximumPoolSize,
+                              EntityManagerFactoryBuilder entityManagerFactoryBuilder, Map<String, Object> jpaSettings) {
+        HikariDataSource dataSource = DataSourceBuilder.create().type(HikariDataSource.class)
+                .url(url).username(username).password(password).build();
+        dataSource.setPoolName("library-events-shard-" + index);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSources.add(dataSource);
+
+        Map<String, Object> settings = new HashMap<>(jpaSettings);
+        settings.put(SHARD_COUNT_SETTING, count);
+        settings.put(SHARD_INDEX_SETTING, index);
+        LocalContainerEntityManagerFactoryBean factoryBean = entityManagerFactoryBuilder.dataSource(dataSource)
+                .managedTypes(PersistenceManagedTypes.of(LibraryEvent.class.getName(), Book.class.getName()))
+                .persistenceUnit("library-events-shard-" + index)
+                .properties(settings)
+                .build();
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+        entityManagerFactories.add(entityManagerFactory);
+
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        EntityManager entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+
+        // the repository behaves like the one spring data creates : exceptions translated to DataAccessException,
+        // and the @Transactional of SimpleJpaRepository applied with the transaction manager of this shard.
+        JpaRepositoryFactory repositoryFactory = new JpaRepositoryFactory(entityManager);
+        repositoryFactory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) -> {
+            proxyFactory.addAdvice(new PersistenceExceptionTranslationInterceptor(factoryBean));
+            proxyFactory.addAdvice(new TransactionInterceptor((TransactionManager) transactionManager, new AnnotationTransactionAttributeSource()));
+        });
+        LibraryEventsRepository repository = repositoryFactory.getRepository(LibraryEventsRepository.class);
+
+        return new Shard(index, repository, entityManager, transactionManager);
+    }
+
+    public int count() {
+        return shards.size();
+    }
+
+    public List<Shard> all() {
+        return shards;
+    }
+
+    // where a NEW library event is written, it has no id yet.
+    public Shard forPartition(int partition) {
+        return shards.get(Math.floorMod(partition, shards.size()));
+    }
+
+    public Shard forLibraryEventId(int libraryEventId) {
+        return shards.get(Math.floorMod(libraryEventId, shards.size()));
+    }
+
+    @Override
+    public void destroy() {
+        entityManagerFactories.forEach(EntityManagerFactory::close);
+        dataSources.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,57 @@
+package consumer.jpa;
+
+import org.hibernate.HibernateException;
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Map;
+import java.util.Properties;
+
+/*
+    The library event id generator, same sequence as the default @GeneratedValue (LibraryEvent_SEQ, pooled by 50),
+    but every id also tells which shard the library event lives in :
+        id = sequence value * shard count + shard index    ->    shard index = id % shard count
+
+    So an UPDATE library event (which only has its libraryEventId) is routed straight to its shard, without asking every shard.
+    The shard count and index are settings of the shard's EntityManagerFactory (see LibraryEventsShards),
+    without them (single datasource) the id is just the sequence value, like before.
+
+    The id is an int, so a shard runs out of ids once its sequence passes (Integer.MAX_VALUE - shard index) / shard count
+    (about 268 million library events per shard with 8 shards), the insert then fails with an IdentifierGenerationException.
+*/
+public class ShardAwareSequenceGenerator extends SequenceStyleGenerator {
+
+    private int shardCount = 1;
+    private int shardIndex = 0;
+
+    @Override
+    public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+        super.configure(type, params, serviceRegistry);
+        Map<String, Object> settings = serviceRegistry.getService(ConfigurationService.class).getSettings();
+        shardCount = Integer.parseInt(String.valueOf(settings.getOrDefault(LibraryEventsShards.SHARD_COUNT_SETTING, 1)));
+        shardIndex = Integer.parseInt(String.valueOf(settings.getOrDefault(LibraryEventsShards.SHARD_INDEX_SETTING, 0)));
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        Number sequenceValue = (Number) super.generate(session, object);
+        if (shardCount == 1) {
+            return sequenceValue;
+        }
+        return libraryEventId(sequenceValue.longValue(), shardCount, shardIndex);
+    }
+
+    public static int libraryEventId(long sequenceValue, int shardCount, int shardIndex) {
+        long id = sequenceValue * shardCount + shardIndex;
+        if (id > Integer.MAX_VALUE) {
+            throw new IdentifierGenerationException("No library event id left on the shard " + shardIndex + " : the sequence value "
+                    + sequenceValue + " is above the last one of the shard, " + (Integer.MAX_VALUE - shardIndex) / shardCount + " with " + shardCount + " shards");
+        }
+        return (int) id;
+    }
+}
@@ -0,0 +1,189 @@
+package consumer.service;
+
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Per partition "applied offset" watermark, for read-your-writes :
+        the producer answers the POST with the partition and the offset of the library event,
+        and the client asks the consumer to wait until that offset is applied, instead of polling with sleeps.
+
+    The watermark of a partition is the highest offset whose library event is processed (saved and committed in the database).
+    It only moves forward, since the records of a partition are processed in order.
+
+    On partition assignment the watermark is seeded with (position - 1) : everything before the position was processed
+    by a previous run (or by another instance of the group), so waiting for those offsets returns right away.
+    Only the partitions of this instance are known : they are added on assignment (or by the first processed record)
+    and dropped on revocation, the offsets asked by the clients never add anything.
+
+    A record that failed (retries exhausted, see the error handler) is skipped by the container, the watermark still moves past it.
+    Its offset is remembered as failed (the last MAX_FAILED_OFFSETS per partition), so a client waiting for it is told it is done
+    but not applied. A failed offset older than that is reported as applied.
+
+    Waiting is done with a CompletableFuture per waiter, completed by the listener thread when the watermark passes the offset,
+    or with "false" once the timeout is over (or the partition is revoked), so no request thread is blocked while waiting.
+*/
+@Component
+public class AppliedOffsetWatermark {
+
+    public enum Outcome {
+        APPLIED,
+        FAILED,
+        PENDING
+    }
+
+    static final int MAX_FAILED_OFFSETS = 1000;
+
+    private final Map<TopicPartition, PartitionWatermark> partitions = new HashMap<>();
+
+    // called by the listener container when the partition is assigned, the position is the next offset to read.
+    public void seed(TopicPartition topicPartition, long position) {
+        advance(topicPartition, position - 1);
+    }
+
+    // called once the library event at this offset is processed.
+    public void advance(TopicPartition topicPartition, long offset) {
+        List<CompletableFuture<Boolean>> applied = partition(topicPartition).advance(offset);
+        applied.forEach(waiter -> waiter.complete(true)); // outside of the lock, the callbacks may run on this thread.
+    }
+
+    // called by the error handler once the record is given up on, the container moves on to the next offset.
+    public void fail(TopicPartition topicPartition, long offset) {
+        PartitionWatermark watermark = partition(topicPartition);
+        watermark.fail(offset);
+        watermark.advance(offset).forEach(waiter -> waiter.complete(true));
+    }
+
+    // called by the listener container when the partition is revoked, another instance is going to apply its offsets.
+    public void revoke(TopicPartition topicPartition) {
+        PartitionWatermark watermark;
+        synchronized (this) {
+            watermark = partitions.remove(topicPartition);
+        }
+        if (watermark != null) {
+            watermark.revoke().forEach(waiter -> waiter.complete(false));
+        }
+    }
+
+    public synchronized Map<TopicPartition, Long> appliedOffsets() {
+        Map<TopicPartition, Long> appliedOffsets = new HashMap<>();
+        partitions.forEach((topicPartition, watermark) -> appliedOffsets.put(topicPartition, watermark.appliedOffset()));
+        return appliedOffsets;
+    }
+
+    // empty when the partition is not assigned to this instance, -1 when nothing is applied on this partition yet.
+    public Optional<Long> appliedOffset(TopicPartition topicPartition) {
+        return find(topicPartition).map(PartitionWatermark::appliedOffset);
+    }
+
+    // empty when the partition is not assigned to this instance.
+    public Optional<Outcome> outcome(TopicPartition topicPartition, long offset) {
+        return find(topicPartition).map(watermark -> watermark.outcome(offset));
+    }
+
+    // empty when the partition is not assigned to this instance, otherwise completes with true once the watermark passed the offset
+    // (see outcome() for applied or failed), or with false when the timeout is over or the partition is revoked.
+    public Optional<CompletableFuture<Boolean>> awaitApplied(TopicPartition topicPartition, long offset, Duration timeout) {
+        return find(topicPartition).map(watermark -> {
+            CompletableFuture<Boolean> waiter = watermark.register(offset);
+            if (!waiter.isDone()) {
+                waiter.completeOnTimeout(false, timeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .whenComplete((applied, throwable) -> watermark.unregister(offset, waiter));
+            }
+            return waiter;
+        });
+    }
+
+    private synchronized Optional<PartitionWatermark> find(TopicPartition topicPartition) {
+        return Optional.ofNullable(partitions.get(topicPartition));
+    }
+
+    private synchronized PartitionWatermark partition(TopicPartition topicPartition) {
+        return partitions.computeIfAbsent(topicPartition, tp -> new PartitionWatermark());
+    }
+
+    private static class PartitionWatermark {
+
+        private long appliedOffset = -1;
+        private boolean revoked;
+
+        // waiters by the offset they are waiting for, so advancing only looks at the waiters that are done.
+        private final TreeMap<Long, List<CompletableFuture<Boolean>>> waiters = new TreeMap<>();
+
+        // the last failed offsets, the oldest go away first.
+        private final TreeSet<Long> failedOffsets = new TreeSet<>();
+
+        synchronized long appliedOffset() {
+            return appliedOffset;
+        }
+
+        synchronized Outcome outcome(long offset) {
+            if (offset > appliedOffset) {
+                return Outcome.PENDING;
+            }
+            return failedOffsets.contains(offset) ? Outcome.FAILED : Outcome.APPLIED;
+        }
+
+        synchronized List<CompletableFuture<Boolean>> advance(long offset) {
+            if (offset <= appliedOffset) {
+                return List.of();
+            }
+            appliedOffset = offset;
+
+            List<CompletableFuture<Boolean>> applied = new ArrayList<>();
+            Iterator<List<CompletableFuture<Boolean>>> iterator = waiters.headMap(offset, true).values().iterator();
+            while (iterator.hasNext()) {
+                applied.addAll(iterator.next());
+                iterator.remove();
+            }
+            return applied;
+        }
+
+        synchronized void fail(long offset) {
+            failedOffsets.add(offset);
+            if (failedOffsets.size() > MAX_FAILED_OFFSETS) {
+                failedOffsets.pollFirst();
+            }
+        }
+
+        synchronized List<CompletableFuture<Boolean>> revoke() {
+            revoked = true;
+            List<CompletableFuture<Boolean>> waiting = new ArrayList<>();
+            waiters.values().forEach(waiting::addAll);
+            waiters.clear();
+            return waiting;
+        }
+
+        synchronized CompletableFuture<Boolean> register(long offset) {
+            if (offset <= appliedOffset) {
+                return CompletableFuture.completedFuture(true);
+            }
+            if (revoked) { // revoked between find() and register().
+                return CompletableFuture.completedFuture(false);
+            }
+            CompletableFuture<Boolean> waiter = new CompletableFuture<>();
+            waiters.computeIfAbsent(offset, o -> new ArrayList<>()).add(waiter);
+            return waiter;
+        }
+
+        // a waiter that timed out must not stay in the map, otherwise a client that never sees its offset leaks memory.
+        synchronized void unregister(long offset, CompletableFuture<Boolean> waiter) {
+            List<CompletableFuture<Boolean>> offsetWaiters = waiters.get(offset);
+            if (offsetWaiters != null && offsetWaiters.remove(waiter) && offsetWaiters.isEmpty()) {
+                waiters.remove(offset);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package consumer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+    Keeps a rolling window of the most recent database save calls (latency + success/failure).
+
+    Every call to LibraryEventsService.save() is recorded here, and the DatabaseHealthPartitionGovernor
+    takes a snapshot every second or so to decide whether the consumer should pause or resume its partitions.
+
+    Samples older than the window are ignored, so once the partitions are paused and no more saves happen,
+    the window empties out by itself and the governor is able to probe the database again.
+
+    Only the exceptions that say something about the database itself (timeouts, lost connections, transient errors) count as failures.
+    A constraint violation or any other bad data exception is a successful round-trip : the database answered, and answered fast,
+    so a burst of bad library events never pauses the partitions.
+*/
+@Component
+@Slf4j
+public class DatabaseHealthMonitor {
+
+    private final long windowNanos;
+    private final LongSupplier nanoClock;
+
+    // ring buffer of the last N samples, the oldest sample gets overwritten when the buffer is full.
+    private final long[] timestamps;
+    private final long[] latencies;
+    private final boolean[] failures;
+    private int next;
+    private int size;
+
+    @Autowired
+    public DatabaseHealthMonitor(@Value("${library-events.db-health.window-ms:10000}") long windowMs,
+                                 @Value("${library-events.db-health.max-samples:1024}") int maxSamples) {
+        this(windowMs, maxSamples, System::nanoTime);
+    }
+
+    public DatabaseHealthMonitor(long windowMs, int maxSamples, LongSupplier nanoClock) {
+        if (windowMs <= 0 || maxSamples <= 0) {
+            throw new IllegalArgumentException("window-ms and max-samples must be greater than zero");
+        }
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.nanoClock = nanoClock;
+        this.timestamps = new long[maxSamples];
+        this.latencies = new long[maxSamples];
+        this.failures = new boolean[maxSamples];
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        record(latencyNanos, false);
+    }
+
+    public void recordFailure(long latencyNanos) {
+        record(latencyNanos, true);
+    }
+
+    // a failed database call, counted as a failure only when the exception tells the database is not healthy.
+    public void recordFailure(long latencyNanos, Throwable exception) {
+        record(latencyNanos, isUnhealthyDatabase(exception));
+    }
+
+    // DataAccessResourceFailureException is the parent of CannotGetJdbcConnectionException, it's what a lost connection becomes through JPA.
+    public static boolean isUnhealthyDatabase(Throwable exception) {
+        return exception instanceof TransientDataAccessException
+                || exception instanceof QueryTimeoutException
+                || exception instanceof CannotGetJdbcConnectionException
+                || exception instanceof DataAccessResourceFailureException
+                || exception instanceof RecoverableDataAccessException;
+    }
+
+    private synchronized void record(long latencyNanos, boolean failed) {
+        timestamps[next] = nanoClock.getAsLong();
+        latencies[next] = latencyNanos;
+        failures[next] = failed;
+        next = (next + 1) % timestamps.length;
+        size = Math.min(size + 1, timestamps.length);
+    }
+
+    // only the samples that are still inside the window are taken into account.
+    public synchronized Snapshot snapshot() {
+        long now = nanoClock.getAsLong();
+        long[] recentLatencies = new long[size];
+        int samples = 0;
+        int failed = 0;
+
+        for (int i = 0; i < size; i++) {
+            int index = Math.floorMod(next - 1 - i, timestamps.length);
+            if (now - timestamps[index] > windowNanos) {
+                break; // everything older than this one is out of the window as well.
+            }
+            recentLatencies[samples++] = latencies[index];
+            if (failures[index]) {
+                failed++;
+            }
+        }
+
+        if (samples == 0) {
+            return new Snapshot(0, 0.0, 0L);
+        }
+
+        Arrays.sort(recentLatencies, 0, samples);
+        long p95 = recentLatencies[(int) Math.ceil(samples * 0.95) - 1];
+        return new Snapshot(samples, (double) failed / samples, TimeUnit.NANOSECONDS.toMillis(p95));
+    }
+
+    public record Snapshot(int samples, double errorRate, long p95LatencyMs) {
+    }
+}
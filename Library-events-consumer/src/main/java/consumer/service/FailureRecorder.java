@@ -0,0 +1,430 @@
+package consumer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import consumer.entity.FailureRecord;
+import consumer.jpa.FailureRecordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.kafka.listener.ListenerExecutionFailedException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/*
+    Records the library events that failed (after the retries of the error handler) as FailureRecord rows, without
+    touching the database on the listener thread.
+
+    When the database is the reason the records fail, every failure used to mean one more insert on that same database,
+    from every listener thread. Now :
+        record()   -> listener thread, never blocks : the FailureRecord goes into a bounded queue (queue-capacity).
+        drainer    -> a single thread inserts the queued FailureRecords in batches (batch-size, with hibernate.jdbc.batch_size).
+        queue full -> the FailureRecord is appended to the spill file (one JSON per line), the drainer puts it back
+                      in the database once the queue is empty again. If even the spill file can't be written, it's dropped.
+        bad row    -> a batch that fails while the database is fine (see DatabaseHealthMonitor.isUnhealthyDatabase) is inserted
+                      one row at a time, the row that still fails goes to the quarantine file (<spill-file>.quarantine) instead of
+                      taking the rest of the batch with it. Same for a spilled line that can't be read back or inserted, otherwise
+                      the replay would stop on it every time and nothing spilled after it would ever reach the database.
+        duplicates -> every failed record gets its FailureRecord (key, payload, offset, status), but the same exception (class + message)
+                      on the same partition within dedup-window-ms has its text stored once : the next ones only store the exception
+                      class and the offset of the first one. The drainer logs a summary (count and offsets) of every window once it's over.
+
+    status : RETRY for a RecoverableDataAccessException (worth retrying later), DEAD for everything else.
+
+    The exception text is cut to FailureRecord.EXCEPTION_LENGTH, the payload is a @Lob.
+
+    Metrics (actuator /actuator/metrics/library.events.failures?tag=outcome:persisted) :
+        library.events.failures{outcome=persisted|spilled|dropped|deduplicated|quarantined} and library.events.failures.queued (gauge).
+*/
+@Component
+@Slf4j
+public class FailureRecorder implements SmartLifecycle {
+
+    public static final String RETRY = "RETRY";
+    public static final String DEAD = "DEAD";
+
+    private final FailureRecordRepository failureRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<FailureRecord> queue;
+    private final int batchSize;
+    private final long dedupWindowNanos;
+    private final Path spillFile;
+    private final Path quarantineFile;
+    private final LongSupplier nanoClock;
+
+    private final Counter persisted;
+    private final Counter spilled;
+    private final Counter dropped;
+    private final Counter deduplicated;
+    private final Counter quarantined;
+
+    // the current window of every partition & exception, the least recently used go away first (without their summary).
+    private final Map<DedupKey, DedupWindow> dedupWindows = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DedupKey, DedupWindow> eldest) {
+            return size() > MAX_DEDUP_WINDOWS;
+        }
+    };
+    private static final int MAX_DEDUP_WINDOWS = 1000;
+
+    private final Object spillLock = new Object();
+    private volatile Thread drainer;
+    private volatile boolean running;
+
+    @Autowired
+    public FailureRecorder(FailureRecordRepository failureRecordRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           @Value("${library-events.failures.queue-capacity:1000}") int queueCapacity,
+                           @Value("${library-events.failures.batch-size:50}") int batchSize,
+                           @Value("${library-events.failures.dedup-window-ms:10000}") long dedupWindowMs,
+                           @Value("${library-events.failures.spill-file:./library-events-failures.ndjson}") Path spillFile) {
+        this(failureRecordRepository, objectMapper, meterRegistry, queueCapacity, batchSize, dedupWindowMs, spillFile, System::nanoTime);
+    }
+
+    public FailureRecorder(FailureRecordRepository failureRecordRepository, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                           int queueCapacity, int batchSize, long dedupWindowMs, Path spillFile, LongSupplier nanoClock) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("queue-capacity and batch-size must be greater than zero");
+        }
+        this.failureRecordRepository = failureRecordRepository;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.dedupWindowNanos = TimeUnit.MILLISECONDS.toNanos(dedupWindowMs);
+        this.spillFile = spillFile;
+        this.quarantineFile = spillFile.resolveSibling(spillFile.getFileName() + ".quarantine");
+        this.nanoClock = nanoClock;
+
+        this.persisted = meterRegistry.counter("library.events.failures", "outcome", "persisted");
+        this.spilled = meterRegistry.counter("library.events.failures", "outcome", "spilled");
+        this.dropped = meterRegistry.counter("library.events.failures", "outcome", "dropped");
+        this.deduplicated = meterRegistry.counter("library.events.failures", "outcome", "deduplicated");
+        this.quarantined = meterRegistry.counter("library.events.failures", "outcome", "quarantined");
+        meterRegistry.gauge("library.events.failures.queued", queue, BlockingQueue::size);
+    }
+
+    // called from the listener thread (error handler recoverer), never blocks on the database.
+    public void record(ConsumerRecord<?, ?> consumerRecord, Exception exception) {
+        Throwable cause = exception instanceof ListenerExecutionFailedException && exception.getCause() != null ? exception.getCause() : exception;
+        String signature = cause.getClass().getName() + ": " + cause.getMessage();
+        Long firstOffset = dedup(new DedupKey(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()), signature), consumerRecord.offset());
+        if (firstOffset != null) {
+            deduplicated.increment();
+        }
+
+        FailureRecord failureRecord = FailureRecord.builder()
+                .topic(consumerRecord.topic())
+                .key_value(consumerRecord.key() instanceof Integer key ? key : null)
+                .errorRecord(consumerRecord.value() == null ? null : consumerRecord.value().toString())
+                .partition(consumerRecord.partition())
+                .offset_value(consumerRecord.offset())
+                .exception(truncate(firstOffset == null ? signature : cause.getClass().getName() + " (same as offset " + firstOffset + ")"))
+                .status(cause instanceof RecoverableDataAccessException ? RETRY : DEAD)
+                .build();
+
+        if (!queue.offer(failureRecord)) {
+            spill(List.of(failureRecord));
+        }
+    }
+
+    private static String truncate(String exception) {
+        return exception.length() > FailureRecord.EXCEPTION_LENGTH ? exception.substring(0, FailureRecord.EXCEPTION_LENGTH) : exception;
+    }
+
+    // null when this is the first time the exception is seen on the partition in the window, otherwise the offset of that first time.
+    private Long dedup(DedupKey dedupKey, long offset) {
+        long now = nanoClock.getAsLong();
+        DedupWindow window;
+        synchronized (dedupWindows) {
+            window = dedupWindows.get(dedupKey);
+            if (window != null && now - window.start < dedupWindowNanos) {
+                window.deduplicate(offset);
+                return window.firstOffset;
+            }
+            dedupWindows.put(dedupKey, new DedupWindow(now, offset));
+        }
+        if (window != null) {
+            logSummary(dedupKey, window);
+        }
+        return null;
+    }
+
+    // the windows that are over are logged and forgotten, even when the same exception never comes back (called by the drainer).
+    public int flushExpiredDedupWindows() {
+        long now = nanoClock.getAsLong();
+        Map<DedupKey, DedupWindow> expired = new LinkedHashMap<>();
+        synchronized (dedupWindows) {
+            Iterator<Map.Entry<DedupKey, DedupWindow>> iterator = dedupWindows.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<DedupKey, DedupWindow> entry = iterator.next();
+                if (now - entry.getValue().start >= dedupWindowNanos) {
+                    expired.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+        }
+        expired.forEach(this::logSummary);
+        return expired.size();
+    }
+
+    private void logSummary(DedupKey dedupKey, DedupWindow window) {
+        if (window.deduplicated > 0) {
+            log.warn("{} more identical failure(s) on {} (offsets {} to {}) recorded with a reference to the offset {} : {}",
+                    window.deduplicated, dedupKey.topicPartition(), window.firstDeduplicatedOffset, window.lastDeduplicatedOffset,
+                    window.firstOffset, dedupKey.signature());
+        }
+    }
+
+    // inserts up to batch-size queued failure records, returns how many were taken from the queue.
+    public int drain() {
+        List<FailureRecord> batch = new ArrayList<>(batchSize);
+        queue.drainTo(batch, batchSize);
+        persist(batch);
+        return batch.size();
+    }
+
+    private void persist(List<FailureRecord> batch) {
+        List<FailureRecord> notInserted = save(batch);
+        if (!notInserted.isEmpty()) {
+            log.error("Unable to persist {} failure record(s), spilling them to {}", notInserted.size(), spillFile);
+            spill(notInserted);
+        }
+    }
+
+    // inserts the batch, returns the failure records that are not inserted because the database is unhealthy (empty otherwise).
+    // when the batch fails for another reason, the rows are inserted one by one and the bad ones are quarantined.
+    private List<FailureRecord> save(List<FailureRecord> batch) {
+        if (batch.isEmpty()) {
+            return List.of();
+        }
+        try {
+            failureRecordRepository.saveAll(batch);
+            persisted.increment(batch.size());
+            return List.of();
+        } catch (RuntimeException e) {
+            if (DatabaseHealthMonitor.isUnhealthyDatabase(e)) {
+                log.warn("Unable to insert {} failure record(s), the database is unhealthy : {}", batch.size(), e.getMessage());
+                return resetIds(batch);
+            }
+            log.warn("Unable to insert {} failure record(s) in one batch, inserting them one by one : {}", batch.size(), e.getMessage());
+        }
+
+        resetIds(batch); // the ids given by the rolled back batch are not in the database.
+        for (int i = 0; i < batch.size(); i++) {
+            FailureRecord failureRecord = batch.get(i);
+            try {
+                failureRecordRepository.save(failureRecord);
+                persisted.increment();
+            } catch (RuntimeException e) {
+                if (DatabaseHealthMonitor.isUnhealthyDatabase(e)) {
+                    log.warn("Unable to insert {} failure record(s), the database is unhealthy : {}", batch.size() - i, e.getMessage());
+                    return resetIds(batch.subList(i, batch.size()));
+                }
+                failureRecord.setBookId(null);
+                quarantine(failureRecord, e);
+            }
+        }
+        return List.of();
+    }
+
+    private static List<FailureRecord> resetIds(List<FailureRecord> failureRecords) {
+        failureRecords.forEach(failureRecord -> failureRecord.setBookId(null));
+        return failureRecords;
+    }
+
+    private void spill(List<FailureRecord> failureRecords) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (FailureRecord failureRecord : failureRecords) {
+                    failureRecord.setBookId(null); // the id is given again when it's read back.
+                    writer.write(objectMapper.writeValueAsString(failureRecord));
+                    writer.newLine();
+                }
+                spilled.increment(failureRecords.size());
+            } catch (IOException e) {
+                dropped.increment(failureRecords.size());
+                log.error("Unable to spill {} failure record(s) to {}, they are dropped : {}", failureRecords.size(), spillFile, e.getMessage());
+            }
+        }
+    }
+
+    private void quarantine(FailureRecord failureRecord, Exception reason) {
+        String line;
+        try {
+            line = objectMapper.writeValueAsString(failureRecord);
+        } catch (IOException e) {
+            line = failureRecord.toString();
+        }
+        quarantine(line, reason);
+    }
+
+    // kept for a human to look at, nothing reads the quarantine file back.
+    private void quarantine(String line, Exception reason) {
+        synchronized (spillLock) {
+            try (BufferedWriter writer = Files.newBufferedWriter(quarantineFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(line);
+                writer.newLine();
+                quarantined.increment();
+                log.error("Failure record quarantined to {} : {}", quarantineFile, reason.getMessage());
+            } catch (IOException e) {
+                dropped.increment();
+                log.error("Unable to quarantine a failure record to {}, it is dropped : {} , the record is {}", quarantineFile, e.getMessage(), line);
+            }
+        }
+    }
+
+    // puts the spilled failure records back in the database, at least once : a batch may be inserted again if a later one fails.
+    // a line that can't be read back, or a failure record that can't be inserted (the database being fine), is quarantined.
+    public void replaySpillFile() {
+        Path replaying = spillFile.resolveSibling(spillFile.getFileName() + ".replaying");
+        try {
+            synchronized (spillLock) {
+                if (!Files.exists(replaying)) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replaying, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            long replayed = 0;
+            try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+                List<FailureRecord> batch = new ArrayList<>(batchSize);
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        batch.add(objectMapper.readValue(line, FailureRecord.class));
+                    } catch (IOException e) {
+                        quarantine(line, e);
+                    }
+                    replayed++;
+                    if (batch.size() == batchSize) {
+                        if (!save(batch).isEmpty()) {
+                            log.warn("Unable to replay the spilled failure records from {}, the database is unhealthy, trying again later", replaying);
+                            return;
+                        }
+                        batch.clear();
+                    }
+                }
+                if (!save(batch).isEmpty()) {
+                    log.warn("Unable to replay the spilled failure records from {}, the database is unhealthy, trying again later", replaying);
+                    return;
+                }
+            }
+            Files.delete(replaying);
+            log.info("Replayed {} spilled failure record(s) from {}", replayed, spillFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to replay the spilled failure records from {}, trying again later : {}", replaying, e.getMessage());
+        }
+    }
+
+    private void drainLoop() {
+        long nextSpillReplay = nanoClock.getAsLong();
+        while (running || !queue.isEmpty()) {
+            try {
+                // waits for the first failure record, then takes whatever else is queued in the same batch.
+                FailureRecord first = queue.poll(500, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<FailureRecord> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    persist(batch);
+                }
+                // the summary of a failure storm is logged once its window is over, even if the storm just stops.
+                flushExpiredDedupWindows();
+                if (first == null && running && nanoClock.getAsLong() - nextSpillReplay >= 0) {
+                    // nothing queued, the database is keeping up, the spilled failure records can go back in.
+                    replaySpillFile();
+                    nextSpillReplay = nanoClock.getAsLong() + TimeUnit.SECONDS.toNanos(30);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        drainer = new Thread(this::drainLoop, "failure-recorder");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    // the queued failure records are inserted (or spilled) before the application stops.
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = drainer;
+        if (thread != null) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<FailureRecord> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            spill(left);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // started before and stopped after the Kafka listener containers, so the last failures still get recorded.
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 200;
+    }
+
+    private record DedupKey(TopicPartition topicPartition, String signature) {
+    }
+
+    private static class DedupWindow {
+        final long start;
+        final long firstOffset;
+        long deduplicated;
+        long firstDeduplicatedOffset = -1;
+        long lastDeduplicatedOffset = -1;
+
+        DedupWindow(long start, long firstOffset) {
+            this.start = start;
+            this.firstOffset = firstOffset;
+        }
+
+        void deduplicate(long offset) {
+            if (deduplicated++ == 0) {
+                firstDeduplicatedOffset = offset;
+            }
+            lastDeduplicatedOffset = offset;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package consumer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/*
+    CLI mode of the export, the application exports the library events into a file and exits :
+
+    java -jar Library-events-consumer.jar --library-events.export.file=library-events.ndjson
+                                          [--library-events.export.format=BINARY]
+                                          [--library-events.export.replay-topic=library-events.replay --library-events.export.replay-rate=200]
+
+    The file can be given like any other property (-D, environment variable...), ExportModeEnvironmentPostProcessor then starts
+    the application without the web server and without the Kafka listeners.
+    The properties are read at runtime (not with @ConditionalOnProperty), so it works with the AOT processed build as well.
+*/
+@Component
+@Slf4j
+public class LibraryEventsExportRunner implements ApplicationRunner {
+
+    public static final String EXPORT_FILE_PROPERTY = "library-events.export.file";
+
+    @Autowired
+    private LibraryEventsExportService libraryEventsExportService;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String file = environment.getProperty(EXPORT_FILE_PROPERTY);
+        if (file == null) {
+            return;
+        }
+
+        var format = environment.getProperty("library-events.export.format", LibraryEventsExportService.Format.class, LibraryEventsExportService.Format.NDJSON);
+        String replayTopic = environment.getProperty("library-events.export.replay-topic");
+        int replayRate = environment.getProperty("library-events.export.replay-rate", Integer.class, 100);
+
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(Path.of(file)))) {
+            libraryEventsExportService.export(outputStream, format, replayTopic, replayRate);
+        }
+        log.info("Export to {} is done, exiting", file);
+        System.exit(SpringApplication.exit(applicationContext));
+    }
+}
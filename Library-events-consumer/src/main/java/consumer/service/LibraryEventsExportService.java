@@ -0,0 +1,183 @@
+package consumer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import consumer.entity.LibraryEvent;
+import consumer.jpa.LibraryEventsRepository;
+import consumer.jpa.LibraryEventsShards;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/*
+    Exports all the persisted library events (with their book), to rebuild the downstream systems or reprocess the history.
+
+    The events are read with LibraryEventsRepository.streamAllWithBook() (database cursor with a fixed fetch size), and every event
+    is detached from the EntityManager once it's written, so the memory stays the same whatever the number of events.
+    When the consumer is sharded (LibraryEventsShards), the shards are exported one after the other, so the events are ordered by id within a shard only.
+
+    Format :
+        NDJSON -> one JSON library event per line, same JSON as the library events topic.
+        BINARY -> for every event : int libraryEventId | int length | JSON bytes (UTF-8), like the key and value of a Kafka record.
+
+    When a replay topic is given, every event is also republished to that topic, at most replayRatePerSecond events per second.
+    A slow replay rate can make the export last for hours, so in that case the events are read by pages of EXPORT_FETCH_SIZE
+    (LibraryEventsRepository.findPageWithBook()), every page in its own short read-only transaction, and the page is replayed
+    after its transaction is over : no database connection (nor cursor) is held while waiting for the next replay slot.
+*/
+@Service
+@Slf4j
+public class LibraryEventsExportService {
+
+    public enum Format {
+        NDJSON,
+        BINARY
+    }
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    KafkaTemplate<Integer, String> kafkaTemplate;
+
+    @Autowired
+    private LibraryEventsShards libraryEventsShards;
+
+    public long export(OutputStream outputStream, Format format, String replayTopic, int replayRatePerSecond) throws IOException {
+        DataOutputStream output = new DataOutputStream(outputStream);
+        ExportState state = new ExportState(replayTopic == null ? 0 : TimeUnit.SECONDS.toNanos(1) / Math.max(1, replayRatePerSecond));
+
+        // one shard after the other, each one with its own read-only transaction(s).
+        for (LibraryEventsShards.Shard shard : libraryEventsShards.all()) {
+            TransactionTemplate transactionTemplate = new TransactionTemplate(shard.transactionManager());
+            transactionTemplate.setReadOnly(true);
+            try {
+                if (replayTopic == null) {
+                    transactionTemplate.executeWithoutResult(status -> exportShard(shard, output, format, state));
+                } else {
+                    exportAndReplayShard(shard, transactionTemplate, output, format, replayTopic, state);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        output.flush();
+
+        if (replayTopic != null) {
+            kafkaTemplate.flush();
+            log.info("Replayed {} library event(s) to the topic {} , {} failed", state.exported, replayTopic, state.replayFailures.get());
+        }
+        log.info("Exported {} library event(s) from {} shard(s) as {}", state.exported, libraryEventsShards.count(), format);
+        return state.exported;
+    }
+
+    // the whole shard with one database cursor, inside the read-only transaction.
+    private void exportShard(LibraryEventsShards.Shard shard, DataOutputStream output, Format format, ExportState state) {
+        try (Stream<LibraryEvent> libraryEvents = shard.repository().streamAllWithBook()) {
+            Iterator<LibraryEvent> iterator = libraryEvents.iterator();
+            while (iterator.hasNext()) {
+                LibraryEvent libraryEvent = iterator.next();
+                write(output, format, libraryEvent);
+                shard.entityManager().detach(libraryEvent); // keep the persistence context empty, otherwise every event stays in memory.
+                state.exported++;
+            }
+        }
+    }
+
+    // page by page : the page is read (and written) in a short read-only transaction, then replayed at the replay rate outside of it.
+    private void exportAndReplayShard(LibraryEventsShards.Shard shard, TransactionTemplate transactionTemplate, DataOutputStream output,
+                                      Format format, String replayTopic, ExportState state) {
+        Pageable page = PageRequest.of(0, Integer.parseInt(LibraryEventsRepository.EXPORT_FETCH_SIZE));
+        int afterId = Integer.MIN_VALUE;
+        while (true) {
+            int pageAfterId = afterId;
+            List<ReplayedEvent> replayedEvents = transactionTemplate.execute(status -> {
+                List<ReplayedEvent> events = new ArrayList<>();
+                for (LibraryEvent libraryEvent : shard.repository().findPageWithBook(pageAfterId, page)) {
+                    events.add(new ReplayedEvent(libraryEvent.getLibraryEventId(), write(output, format, libraryEvent)));
+                    shard.entityManager().detach(libraryEvent);
+                }
+                return events;
+            });
+            if (replayedEvents == null || replayedEvents.isEmpty()) {
+                return;
+            }
+
+            for (ReplayedEvent replayedEvent : replayedEvents) {
+                state.nextReplayNanos = throttle(state.nextReplayNanos, state.replayIntervalNanos);
+                kafkaTemplate.send(replayTopic, replayedEvent.libraryEventId(), replayedEvent.json())
+                        .whenComplete((sendResult, throwable) -> {
+                            if (throwable != null) {
+                                state.replayFailures.incrementAndGet();
+                                log.error("Error replaying the library event {} : {}", replayedEvent.libraryEventId(), throwable.getMessage());
+                            }
+                        });
+                state.exported++;
+            }
+            afterId = replayedEvents.get(replayedEvents.size() - 1).libraryEventId();
+        }
+    }
+
+    // writes the library event in the export format, returns its JSON.
+    private String write(DataOutputStream output, Format format, LibraryEvent libraryEvent) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(libraryEvent);
+            if (format == Format.NDJSON) {
+                output.write(json);
+                output.write('\n');
+            } else {
+                output.writeInt(libraryEvent.getLibraryEventId());
+                output.writeInt(json.length);
+                output.write(json);
+            }
+            return new String(json, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private record ReplayedEvent(int libraryEventId, String json) {
+    }
+
+    // carried over from one shard to the next, so the replay rate is for the whole export.
+    private static class ExportState {
+        final long replayIntervalNanos;
+        final AtomicLong replayFailures = new AtomicLong();
+        long nextReplayNanos = System.nanoTime();
+        long exported;
+
+        ExportState(long replayIntervalNanos) {
+            this.replayIntervalNanos = replayIntervalNanos;
+        }
+    }
+
+    // waits for the next replay slot, so we never go over the replay rate.
+    private static long throttle(long nextReplayNanos, long replayIntervalNanos) {
+        long waitNanos = nextReplayNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while replaying the library events", e);
+            }
+        }
+        // don't let a slow export build up a burst of "late" slots.
+        return Math.max(nextReplayNanos, System.nanoTime() - replayIntervalNanos) + replayIntervalNanos;
+    }
+}
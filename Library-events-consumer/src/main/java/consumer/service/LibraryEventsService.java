@@ -4,14 +4,17 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import consumer.entity.LibraryEvent;
 import consumer.jpa.LibraryEventsRepository;
+import consumer.jpa.LibraryEventsShards;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.RecoverableDataAccessException;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /*
     use the objectMapper to get the library event out of the consumer record.
@@ -33,8 +36,15 @@ public class LibraryEventsService {
     @Autowired
     KafkaTemplate<Integer,String> kafkaTemplate;
 
+    // one LibraryEventsRepository per shard (a single one when library-events.sharding.urls is not set).
     @Autowired
-    private LibraryEventsRepository libraryEventsRepository;
+    private LibraryEventsShards libraryEventsShards;
+
+    @Autowired
+    private DatabaseHealthMonitor databaseHealthMonitor;
+
+    @Autowired
+    private AppliedOffsetWatermark appliedOffsetWatermark;
 
     public void processLibraryEvent(ConsumerRecord<Integer,String> consumerRecord) throws JsonProcessingException {
         LibraryEvent libraryEvent = objectMapper.readValue(consumerRecord.value(), LibraryEvent.class);
@@ -47,35 +57,58 @@ public class LibraryEventsService {
         switch(libraryEvent.getLibraryEventType()){
             // save operation
             case NEW:
-                save(libraryEvent);
+                save(libraryEvent, libraryEventsShards.forPartition(consumerRecord.partition()).repository());
                 break;
             // update operation
             case UPDATE:
                 //validate the libraryevent
-                validate(libraryEvent);
-                save(libraryEvent);
+                LibraryEventsRepository libraryEventsRepository = validate(libraryEvent);
+                save(libraryEvent, libraryEventsRepository);
                 break;
             default:
                 log.info("Invalid Library Event Type");
         }
+
+        // the save is committed at this point, so a client waiting on this offset can now read its library event.
+        appliedOffsetWatermark.advance(new TopicPartition(consumerRecord.topic(), consumerRecord.partition()), consumerRecord.offset());
     }
 
-    private void validate(LibraryEvent libraryEvent) {
+    // returns the repository of the shard the library event lives in, the update is saved there.
+    private LibraryEventsRepository validate(LibraryEvent libraryEvent) {
         if(libraryEvent.getLibraryEventId()==null){
             throw new IllegalArgumentException("Library Event Id is missing");
         }
 
-        Optional<LibraryEvent> libraryEventOptional = libraryEventsRepository.findById(libraryEvent.getLibraryEventId()); // check whether the library event ID exists.
+        LibraryEventsRepository libraryEventsRepository = libraryEventsShards.forLibraryEventId(libraryEvent.getLibraryEventId()).repository();
+        // check whether the library event ID exists, it's the same database as the save, so it's timed as well.
+        Optional<LibraryEvent> libraryEventOptional = timed(() -> libraryEventsRepository.findById(libraryEvent.getLibraryEventId()));
         if(!libraryEventOptional.isPresent()){
             throw new IllegalArgumentException("Not a valid library Event");
         }
 
         log.info("Validation is successful for the library Event : {} ", libraryEventOptional.get()); // print the value that's there in the database.
+        return libraryEventsRepository;
     }
 
-    private void save(LibraryEvent libraryEvent) {
+    private void save(LibraryEvent libraryEvent, LibraryEventsRepository libraryEventsRepository) {
         libraryEvent.getBook().setLibraryEvent(libraryEvent);
-        libraryEventsRepository.save(libraryEvent);   // insert data into DB
+
+        timed(() -> libraryEventsRepository.save(libraryEvent));   // insert data into DB
         log.info("Successfully Persisted the libary Event {} ", libraryEvent);
     }
+
+    // every database call is timed, so the DatabaseHealthMonitor can tell when the database slows down or starts failing
+    // (a bad library event, like a duplicate key, is not counted as the database failing, see DatabaseHealthMonitor).
+    private <T> T timed(Supplier<T> databaseCall) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = databaseCall.get();
+        } catch (RuntimeException e) {
+            databaseHealthMonitor.recordFailure(System.nanoTime() - start, e);
+            throw e;
+        }
+        databaseHealthMonitor.recordSuccess(System.nanoTime() - start);
+        return result;
+    }
 }
@@ -0,0 +1,104 @@
+package benchmark;
+
+import consumer.LibraryEventsConsumerApplication;
+import consumer.service.LibraryEventsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+    Write throughput of the consumer (NEW library events per second) with 1, 2, 4 ... shards (LibraryEventsShards).
+
+    The whole consumer application is started without the web server and without the Kafka listeners, then one writer thread
+    per partition calls LibraryEventsService.processLibraryEvent() like the listener threads do, so the NEW library events
+    are spread over the shards by partition.
+
+    storage :
+        mem  -> in-memory H2 databases, only the database locking and the connection pools are measured.
+        file -> H2 databases in target/sharded-write-benchmark, the writes go to disk like a real database.
+
+    Run from the Library-events-consumer module (this is not a unit test) :
+        mvn test-compile exec:java -Dexec.mainClass=benchmark.ShardedWriteBenchmark -Dexec.classpathScope=test [-Dexec.args="<mem|file> <partitions> <events per partition>"]
+*/
+public class ShardedWriteBenchmark {
+
+    private static final String LIBRARY_EVENT = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":%d,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+    public static void main(String[] args) throws Exception {
+        String storage = args.length > 0 ? args[0] : "file";
+        int partitions = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int eventsPerPartition = args.length > 2 ? Integer.parseInt(args[2]) : 5_000;
+
+        System.out.printf("%s storage, %d partitions, %d events per partition%n%n", storage, partitions, eventsPerPartition);
+        System.out.printf("%-8s %15s %12s%n", "shards", "events/s", "speedup");
+        double baseline = 0;
+        for (int shards = 1; shards <= partitions; shards *= 2) {
+            double throughput = run(storage, shards, partitions, eventsPerPartition);
+            baseline = baseline == 0 ? throughput : baseline;
+            System.out.printf("%-8d %15.0f %11.2fx%n", shards, throughput, throughput / baseline);
+        }
+        System.exit(0);
+    }
+
+    private static double run(String storage, int shards, int partitions, int eventsPerPartition) throws Exception {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        String urls = IntStream.range(0, shards)
+                .mapToObj(index -> storage.equals("mem")
+                        ? "jdbc:h2:mem:benchmark-" + run + "-" + index + ";DB_CLOSE_DELAY=-1"
+                        : "jdbc:h2:file:./target/sharded-write-benchmark/" + run + "-" + index)
+                .collect(Collectors.joining(","));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(LibraryEventsConsumerApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("library-events.listener.auto-startup=false",
+                        "library-events.sharding.urls=" + urls,
+                        "library-events.sharding.maximum-pool-size=" + partitions,
+                        "logging.level.root=WARN",
+                        "spring.main.banner-mode=off")
+                .run()) {
+            LibraryEventsService libraryEventsService = context.getBean(LibraryEventsService.class);
+
+            // warm up, not measured.
+            write(libraryEventsService, partitions, eventsPerPartition / 10, 0);
+
+            long start = System.nanoTime();
+            write(libraryEventsService, partitions, eventsPerPartition, eventsPerPartition);
+            long elapsed = System.nanoTime() - start;
+            return (double) partitions * eventsPerPartition / elapsed * TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    private static void write(LibraryEventsService libraryEventsService, int partitions, int eventsPerPartition, int firstOffset) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                int writerPartition = partition;
+                writers.add(executor.submit(() -> {
+                    for (int offset = firstOffset; offset < firstOffset + eventsPerPartition; offset++) {
+                        int bookId = writerPartition * 10_000_000 + offset;
+                        libraryEventsService.processLibraryEvent(
+                                new ConsumerRecord<>("library-events", writerPartition, offset, null, LIBRARY_EVENT.formatted(bookId)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
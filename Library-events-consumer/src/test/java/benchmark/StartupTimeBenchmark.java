@@ -0,0 +1,119 @@
+package benchmark;
+
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Measures the time to the first processed record of the consumer, from the moment the JVM is launched until
+    LibraryEventsConsumer logs "First library event processed", for :
+        jar        -> plain startup.
+        aot        -> -Dspring.aot.enabled=true
+        cds        -> -XX:SharedArchiveFile=target/application.jsa
+        aot + cds  -> both.
+
+    An embedded Kafka broker is started with one library event in the topic, and every run uses a new consumer group
+    (auto-offset-reset=earliest), so every run has exactly one record waiting for it.
+
+    Build the fast-startup jar first from the root directory (install, so the module finds library-events-startup on its own),
+    then run it from the Library-events-consumer module (this is not a unit test) :
+        mvn -Pfast-startup install -DskipTests
+        mvn test-compile exec:java -Dexec.mainClass=benchmark.StartupTimeBenchmark -Dexec.classpathScope=test [-Dexec.args="<runs per mode>"]
+*/
+public class StartupTimeBenchmark {
+
+    private static final String TOPIC = "library-events";
+    private static final String FIRST_RECORD_LOG = "First library event processed";
+    private static final String LIBRARY_EVENT = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":123,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+
+        Path target = Path.of("target");
+        Path archive = target.resolve("application.jsa");
+        Path jar;
+        try (var files = Files.list(target)) {
+            jar = files.filter(path -> path.getFileName().toString().endsWith(".jar")).findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No jar in target/, run mvn -Pfast-startup package first"));
+        }
+        if (!Files.exists(archive)) {
+            throw new IllegalStateException("No class-data sharing archive in target/, run mvn -Pfast-startup package first");
+        }
+
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, false, 1, TOPIC);
+        broker.afterPropertiesSet();
+        try {
+            publishLibraryEvent(broker.getBrokersAsString());
+
+            Map<String, List<String>> modes = Map.of(
+                    "jar", List.of(),
+                    "aot", List.of("-Dspring.aot.enabled=true"),
+                    "cds", List.of("-XX:SharedArchiveFile=" + archive),
+                    "aot + cds", List.of("-XX:SharedArchiveFile=" + archive, "-Dspring.aot.enabled=true"));
+
+            System.out.printf("%-10s %12s %12s %12s%n", "mode", "min ms", "median ms", "max ms");
+            for (String mode : List.of("jar", "aot", "cds", "aot + cds")) {
+                long[] times = new long[runs];
+                run(jar, modes.get(mode), broker.getBrokersAsString()); // warm up the OS page cache, not measured.
+                for (int i = 0; i < runs; i++) {
+                    times[i] = run(jar, modes.get(mode), broker.getBrokersAsString());
+                }
+                Arrays.sort(times);
+                System.out.printf("%-10s %12d %12d %12d%n", mode, times[0], times[runs / 2], times[runs - 1]);
+            }
+        } finally {
+            broker.destroy();
+        }
+    }
+
+    private static void publishLibraryEvent(String brokers) throws Exception {
+        Map<String, Object> configs = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, brokers,
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, IntegerSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        try (KafkaProducer<Integer, String> producer = new KafkaProducer<>(configs)) {
+            producer.send(new ProducerRecord<>(TOPIC, LIBRARY_EVENT)).get(30, TimeUnit.SECONDS);
+        }
+    }
+
+    // returns the milliseconds from the process launch to the first processed record.
+    private static long run(Path jar, List<String> jvmOptions, String brokers) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.addAll(List.of("-jar", jar.toString(),
+                "--server.port=0",
+                "--spring.kafka.consumer.bootstrap-servers=" + brokers,
+                "--spring.kafka.consumer.group-id=startup-benchmark-" + UUID.randomUUID(),
+                "--spring.kafka.consumer.auto-offset-reset=earliest"));
+
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains(FIRST_RECORD_LOG)) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+            }
+            throw new IllegalStateException("The consumer exited before processing the library event, exit code " + process.waitFor());
+        } finally {
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+        }
+    }
+}
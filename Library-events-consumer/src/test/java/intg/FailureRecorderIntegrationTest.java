@@ -0,0 +1,205 @@
+package intg;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import consumer.LibraryEventsConsumerApplication;
+import consumer.entity.FailureRecord;
+import consumer.entity.LibraryEvent;
+import consumer.jpa.FailureRecordRepository;
+import consumer.service.FailureRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    The FailureRecorder with the real FailureRecordRepository (in-memory H2), a fake clock for the dedup window,
+    and without starting its drainer thread, so the queue is drained (or filled up) by the test.
+*/
+@DataJpaTest
+@ContextConfiguration(classes = LibraryEventsConsumerApplication.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the failure records are inserted by the recorder, not in the test transaction.
+class FailureRecorderIntegrationTest {
+
+    @Autowired
+    FailureRecordRepository failureRecordRepository;
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        failureRecordRepository.deleteAll();
+    }
+
+    @Test
+    void identicalFailuresKeepTheirRecordButTheExceptionTextIsStoredOncePerWindow() {
+
+        // given
+        FailureRecorder failureRecorder = failureRecorder(100, 1000);
+
+        // when
+        for (int offset = 0; offset < 10; offset++) {
+            failureRecorder.record(consumerRecord(0, offset), new RecoverableDataAccessException("Temporary Network Issue"));
+        }
+        failureRecorder.record(consumerRecord(1, 0), new RecoverableDataAccessException("Temporary Network Issue"));
+        failureRecorder.record(consumerRecord(0, 10), new IllegalArgumentException("Not a valid library Event"));
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        failureRecorder.record(consumerRecord(0, 11), new RecoverableDataAccessException("Temporary Network Issue"));
+        failureRecorder.drain();
+
+        // then : every failed record is there with its payload, only the exception text is deduplicated.
+        assertEquals(13, failureRecordRepository.count());
+        assertEquals(12, failureRecordRepository.findAllByStatus(FailureRecorder.RETRY).size());
+        assertEquals(1, failureRecordRepository.findAllByStatus(FailureRecorder.DEAD).size());
+        assertEquals(13, outcome("persisted"));
+        assertEquals(9, outcome("deduplicated"));
+        for (FailureRecord failureRecord : failureRecordRepository.findAllByStatus(FailureRecorder.RETRY)) {
+            assertTrue(failureRecord.getErrorRecord().contains("Kafka Using Spring Boot"));
+            boolean firstOfTheWindow = failureRecord.getPartition() == 1 || failureRecord.getOffset_value() == 0 || failureRecord.getOffset_value() == 11;
+            assertEquals(firstOfTheWindow ? "org.springframework.dao.RecoverableDataAccessException: Temporary Network Issue"
+                    : "org.springframework.dao.RecoverableDataAccessException (same as offset 0)", failureRecord.getException());
+        }
+    }
+
+    @Test
+    void expiredDedupWindowsAreFlushedEvenWhenTheFailuresStop() {
+
+        // given
+        FailureRecorder failureRecorder = failureRecorder(100, 1000);
+        for (int offset = 0; offset < 3; offset++) {
+            failureRecorder.record(consumerRecord(0, offset), new RecoverableDataAccessException("Temporary Network Issue"));
+        }
+
+        // when / then : nothing to flush while the window is open, then the window is logged and forgotten.
+        assertEquals(0, failureRecorder.flushExpiredDedupWindows());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, failureRecorder.flushExpiredDedupWindows());
+        assertEquals(0, failureRecorder.flushExpiredDedupWindows());
+    }
+
+    @Test
+    void longPayloadsAndExceptionsAreStored() {
+
+        // given : an enum mismatch, jackson echoes the whole payload (with a long book name) in the exception message.
+        FailureRecorder failureRecorder = failureRecorder(100, 1000);
+        String payload = "{\"libraryEventId\":null,\"libraryEventType\":\"REMOVE\",\"book\":{\"bookId\":1,\"bookName\":\""
+                + "Kafka Using Spring Boot ".repeat(20) + "\",\"bookAuthor\":\"Sawsaw\"}}";
+        InvalidFormatException invalidFormat = assertThrows(InvalidFormatException.class, () -> new ObjectMapper().readValue(payload, LibraryEvent.class));
+        assertTrue(payload.length() > 255 && invalidFormat.getMessage().length() > 255);
+
+        // when
+        failureRecorder.record(consumerRecord(0, 0, payload), invalidFormat);
+        failureRecorder.record(consumerRecord(0, 1, payload), new IllegalStateException("x".repeat(2 * FailureRecord.EXCEPTION_LENGTH)));
+        failureRecorder.drain();
+
+        // then : both rows are there, with the whole payload, the exception cut to its column.
+        assertEquals(2, failureRecordRepository.count());
+        assertEquals(2, outcome("persisted"));
+        assertEquals(0, outcome("spilled"));
+        for (FailureRecord failureRecord : failureRecordRepository.findAllByStatus(FailureRecorder.DEAD)) {
+            assertEquals(payload, failureRecord.getErrorRecord());
+            assertTrue(failureRecord.getException().length() <= FailureRecord.EXCEPTION_LENGTH);
+        }
+        assertTrue(failureRecordRepository.findAllByStatus(FailureRecorder.DEAD).stream()
+                .anyMatch(failureRecord -> failureRecord.getException().startsWith(InvalidFormatException.class.getName())));
+    }
+
+    @Test
+    void spilledLinesThatCantBeReplayedAreQuarantined() throws Exception {
+
+        // given : a line that is not a failure record, and one that the database refuses (status longer than its column), between two good ones.
+        FailureRecorder failureRecorder = failureRecorder(100, 1000);
+        ObjectMapper objectMapper = new ObjectMapper();
+        Files.write(tempDir.resolve("failures.ndjson"), List.of(
+                objectMapper.writeValueAsString(failureRecord(0, FailureRecorder.RETRY)),
+                "{\"topic\":\"library-ev",
+                objectMapper.writeValueAsString(failureRecord(1, "X".repeat(300))),
+                objectMapper.writeValueAsString(failureRecord(2, FailureRecorder.DEAD))));
+
+        // when
+        failureRecorder.replaySpillFile();
+
+        // then : the good ones are inserted, the bad ones are out of the way, the next replay has nothing left to do.
+        assertEquals(2, failureRecordRepository.count());
+        assertEquals(2, outcome("persisted"));
+        assertEquals(2, outcome("quarantined"));
+        assertEquals(2, Files.readAllLines(tempDir.resolve("failures.ndjson.quarantine")).size());
+        assertFalse(Files.exists(tempDir.resolve("failures.ndjson")));
+        assertFalse(Files.exists(tempDir.resolve("failures.ndjson.replaying")));
+        failureRecorder.replaySpillFile();
+        assertEquals(2, failureRecordRepository.count());
+    }
+
+    @Test
+    void failuresAreSpilledWhenTheQueueIsFullAndReplayedLater() throws Exception {
+
+        // given
+        FailureRecorder failureRecorder = failureRecorder(2, 0);
+
+        // when
+        for (int offset = 0; offset < 5; offset++) {
+            failureRecorder.record(consumerRecord(0, offset), new RecoverableDataAccessException("Temporary Network Issue"));
+        }
+
+        // then
+        assertEquals(3, outcome("spilled"));
+        assertEquals(3, Files.readAllLines(tempDir.resolve("failures.ndjson")).size());
+
+        // when
+        failureRecorder.drain();
+        failureRecorder.replaySpillFile();
+
+        // then
+        assertEquals(5, failureRecordRepository.count());
+        assertEquals(5, outcome("persisted"));
+        assertEquals(0, outcome("dropped"));
+        assertFalse(Files.exists(tempDir.resolve("failures.ndjson")));
+        FailureRecord failureRecord = failureRecordRepository.findAllByStatus(FailureRecorder.RETRY).get(0);
+        assertEquals("library-events", failureRecord.getTopic());
+    }
+
+    private FailureRecorder failureRecorder(int queueCapacity, long dedupWindowMs) {
+        return new FailureRecorder(failureRecordRepository, new ObjectMapper(), meterRegistry, queueCapacity, 50, dedupWindowMs,
+                tempDir.resolve("failures.ndjson"), clock::get);
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.counter("library.events.failures", "outcome", outcome).count();
+    }
+
+    private static ConsumerRecord<Integer, String> consumerRecord(int partition, long offset) {
+        return consumerRecord(partition, offset,
+                "{\"libraryEventId\":999,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":1,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}");
+    }
+
+    private static ConsumerRecord<Integer, String> consumerRecord(int partition, long offset, String value) {
+        return new ConsumerRecord<>("library-events", partition, offset, 999, value);
+    }
+
+    private static FailureRecord failureRecord(long offset, String status) {
+        return FailureRecord.builder().topic("library-events").key_value(999).errorRecord("{}").partition(0).offset_value(offset)
+                .exception("org.springframework.dao.RecoverableDataAccessException: Temporary Network Issue").status(status).build();
+    }
+}
@@ -0,0 +1,77 @@
+package intg;
+
+import consumer.LibraryEventsConsumerApplication;
+import consumer.entity.Book;
+import consumer.entity.LibraryEvent;
+import consumer.entity.LibraryEventType;
+import consumer.jpa.LibraryEventsRepository;
+import consumer.service.LibraryEventsExportService;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.serialization.IntegerDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+import org.springframework.kafka.test.utils.KafkaTestUtils;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+    The replay of the export with the real KafkaTemplate of the consumer (spring.kafka.producer.* of application.yml)
+    against an embedded broker : the Integer keys have to go through the IntegerSerializer, not the default StringSerializer.
+*/
+@SpringBootTest(classes = LibraryEventsConsumerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@EmbeddedKafka(topics = {"library-events", LibraryEventsExportReplayIntegrationTest.REPLAY_TOPIC}, partitions = 1)
+@TestPropertySource(properties = {"spring.kafka.consumer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
+        "library-events.listener.auto-startup=false"})
+class LibraryEventsExportReplayIntegrationTest {
+
+    static final String REPLAY_TOPIC = "library-events.replay";
+
+    @Autowired
+    LibraryEventsExportService libraryEventsExportService;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository;
+
+    @Autowired
+    EmbeddedKafkaBroker embeddedKafkaBroker;
+
+    @Test
+    void replayedLibraryEventsAreReadBackWithTheirKey() throws Exception {
+
+        // given
+        List<Integer> libraryEventIds = new ArrayList<>();
+        for (int i = 1; i <= 3; i++) {
+            var libraryEvent = LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).build();
+            libraryEvent.setBook(Book.builder().bookId(i).bookName("Kafka Using Spring Boot " + i).bookAuthor("Sawsaw").libraryEvent(libraryEvent).build());
+            libraryEventIds.add(libraryEventsRepository.save(libraryEvent).getLibraryEventId());
+        }
+
+        // when
+        long exported = libraryEventsExportService.export(new ByteArrayOutputStream(), LibraryEventsExportService.Format.NDJSON, REPLAY_TOPIC, 1000);
+
+        // then
+        assertEquals(3, exported);
+        var configs = KafkaTestUtils.consumerProps("replay-test-group", "true", embeddedKafkaBroker);
+        try (Consumer<Integer, String> consumer = new DefaultKafkaConsumerFactory<>(configs, new IntegerDeserializer(), new StringDeserializer()).createConsumer()) {
+            embeddedKafkaBroker.consumeFromAnEmbeddedTopic(consumer, REPLAY_TOPIC);
+            List<Integer> keys = new ArrayList<>();
+            for (ConsumerRecord<Integer, String> consumerRecord : KafkaTestUtils.getRecords(consumer, Duration.ofSeconds(10), 3)) {
+                keys.add(consumerRecord.key());
+            }
+            assertEquals(libraryEventIds, keys);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package intg;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import consumer.LibraryEventsConsumerApplication;
+import consumer.entity.Book;
+import consumer.entity.LibraryEvent;
+import consumer.entity.LibraryEventType;
+import consumer.jpa.LibraryEventsRepository;
+import consumer.jpa.LibraryEventsShards;
+import consumer.service.LibraryEventsExportService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/*
+    @DataJpaTest : only the JPA part of the application (in-memory H2), the export service is imported on top of it,
+    and the KafkaTemplate is mocked so the replay can be verified without a broker.
+*/
+@DataJpaTest
+@ContextConfiguration(classes = LibraryEventsConsumerApplication.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({LibraryEventsExportService.class, LibraryEventsShards.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // the export opens its own read-only transaction.
+class LibraryEventsExportServiceIntegrationTest {
+
+    @Autowired
+    LibraryEventsExportService libraryEventsExportService;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @MockBean
+    KafkaTemplate<Integer, String> kafkaTemplate;
+
+    @BeforeEach
+    void setUp() {
+        libraryEventsRepository.deleteAll();
+        for (int i = 1; i <= 3; i++) {
+            var libraryEvent = LibraryEvent.builder().libraryEventType(LibraryEventType.NEW).build();
+            var book = Book.builder().bookId(i).bookName("Kafka Using Spring Boot " + i).bookAuthor("Sawsaw").libraryEvent(libraryEvent).build();
+            libraryEvent.setBook(book);
+            libraryEventsRepository.save(libraryEvent);
+        }
+    }
+
+    @Test
+    void exportNdjson() throws Exception {
+
+        // given
+        var output = new ByteArrayOutputStream();
+
+        // when
+        long exported = libraryEventsExportService.export(output, LibraryEventsExportService.Format.NDJSON, null, 0);
+
+        // then
+        var lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, exported);
+        assertEquals(3, lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            var libraryEvent = objectMapper.readValue(lines[i], LibraryEvent.class);
+            assertEquals(LibraryEventType.NEW, libraryEvent.getLibraryEventType());
+            assertEquals("Kafka Using Spring Boot " + (i + 1), libraryEvent.getBook().getBookName());
+        }
+    }
+
+    @Test
+    void exportBinaryAndReplay() throws Exception {
+
+        // given
+        var output = new ByteArrayOutputStream();
+        when(kafkaTemplate.send(eq("library-events.replay"), anyInt(), anyString())).thenReturn(new CompletableFuture<>());
+
+        // when
+        long exported = libraryEventsExportService.export(output, LibraryEventsExportService.Format.BINARY, "library-events.replay", 1000);
+
+        // then
+        var input = new DataInputStream(new ByteArrayInputStream(output.toByteArray()));
+        for (int i = 0; i < exported; i++) {
+            int libraryEventId = input.readInt();
+            var libraryEvent = objectMapper.readValue(input.readNBytes(input.readInt()), LibraryEvent.class);
+            assertEquals(libraryEventId, libraryEvent.getLibraryEventId());
+        }
+        assertEquals(0, input.available());
+        verify(kafkaTemplate, times(3)).send(eq("library-events.replay"), anyInt(), anyString());
+    }
+}
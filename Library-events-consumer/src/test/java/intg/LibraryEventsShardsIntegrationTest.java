@@ -0,0 +1,107 @@
+package intg;
+
+import consumer.LibraryEventsConsumerApplication;
+import consumer.entity.LibraryEvent;
+import consumer.jpa.LibraryEventsRepository;
+import consumer.jpa.LibraryEventsShards;
+import consumer.service.AppliedOffsetWatermark;
+import consumer.service.DatabaseHealthMonitor;
+import consumer.service.LibraryEventsService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+    Three in-memory H2 shards on top of the default (embedded) datasource, the library events are processed
+    through the LibraryEventsService like the listener does, and then looked up in every shard.
+*/
+@DataJpaTest
+@ContextConfiguration(classes = LibraryEventsConsumerApplication.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({LibraryEventsService.class, LibraryEventsShards.class, AppliedOffsetWatermark.class, DatabaseHealthMonitor.class})
+@TestPropertySource(properties = "library-events.sharding.urls="
+        + "jdbc:h2:mem:shards-test-0;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shards-test-1;DB_CLOSE_DELAY=-1,"
+        + "jdbc:h2:mem:shards-test-2;DB_CLOSE_DELAY=-1")
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // every shard has its own transaction manager.
+class LibraryEventsShardsIntegrationTest {
+
+    @Autowired
+    LibraryEventsService libraryEventsService;
+
+    @Autowired
+    LibraryEventsShards libraryEventsShards;
+
+    @Autowired
+    LibraryEventsRepository libraryEventsRepository; // the default datasource.
+
+    @MockBean
+    KafkaTemplate<Integer, String> kafkaTemplate;
+
+    @Test
+    void newLibraryEventsAreRoutedByPartitionAndUpdatesById() throws Exception {
+
+        // given
+        for (int partition = 0; partition < 3; partition++) {
+            String newEvent = "{\"libraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"bookId\":" + (100 + partition)
+                    + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+            libraryEventsService.processLibraryEvent(new ConsumerRecord<>("library-events", partition, 0, null, newEvent));
+        }
+
+        // then : one library event per shard, and the id tells the shard.
+        assertEquals(3, libraryEventsShards.count());
+        List<LibraryEvent> libraryEvents = new ArrayList<>();
+        for (LibraryEventsShards.Shard shard : libraryEventsShards.all()) {
+            List<LibraryEvent> shardEvents = new ArrayList<>();
+            shard.repository().findAll().forEach(shardEvents::add);
+            assertEquals(1, shardEvents.size());
+            assertEquals(shard.index(), shardEvents.get(0).getLibraryEventId() % 3);
+            libraryEvents.addAll(shardEvents);
+        }
+        assertEquals(0, libraryEventsRepository.count());
+
+        // when : an update only has the id, it has to find its shard.
+        LibraryEvent libraryEvent = libraryEvents.get(1);
+        String updateEvent = "{\"libraryEventId\":" + libraryEvent.getLibraryEventId() + ",\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":101"
+                + ",\"bookName\":\"Kafka Using Spring Boot 2.X\",\"bookAuthor\":\"Sawsaw\"}}";
+        libraryEventsService.processLibraryEvent(new ConsumerRecord<>("library-events", 0, 1, libraryEvent.getLibraryEventId(), updateEvent));
+
+        // then
+        var shard = libraryEventsShards.forLibraryEventId(libraryEvent.getLibraryEventId());
+        var transactionTemplate = new TransactionTemplate(shard.transactionManager());
+        String bookName = transactionTemplate.execute(status ->
+                shard.repository().findById(libraryEvent.getLibraryEventId()).orElseThrow().getBook().getBookName());
+        assertEquals("Kafka Using Spring Boot 2.X", bookName);
+    }
+
+    @Test
+    void updateOfAnUnknownLibraryEventIsRejected() {
+
+        // given
+        String updateEvent = "{\"libraryEventId\":123456,\"libraryEventType\":\"UPDATE\",\"book\":{\"bookId\":1"
+                + ",\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+        // when / then
+        var exception = assertThrows(IllegalArgumentException.class,
+                () -> libraryEventsService.processLibraryEvent(new ConsumerRecord<>("library-events", 0, 0, 123456, updateEvent)));
+        assertTrue(exception.getMessage().contains("Not a valid library Event"));
+    }
+}
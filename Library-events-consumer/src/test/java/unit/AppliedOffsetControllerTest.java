@@ -0,0 +1,67 @@
+package unit;
+
+import consumer.LibraryEventsConsumerApplication;
+import consumer.controller.AppliedOffsetController;
+import consumer.service.AppliedOffsetWatermark;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(AppliedOffsetController.class)
+@ContextConfiguration(classes = LibraryEventsConsumerApplication.class)
+@Import(AppliedOffsetWatermark.class)
+class AppliedOffsetControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    AppliedOffsetWatermark appliedOffsetWatermark;
+
+    @Test
+    void appliedAndFailedOffsets() throws Exception {
+
+        // given
+        var topicPartition = new TopicPartition("library-events", 1);
+        appliedOffsetWatermark.seed(topicPartition, 41);
+        appliedOffsetWatermark.fail(topicPartition, 41);
+
+        // expect / then
+        MvcResult applied = mockMvc.perform(get("/v1/libraryevents/applied-offsets/library-events/1?offset=40"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(applied))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(true))
+                .andExpect(jsonPath("$.failed").value(false));
+
+        MvcResult failed = mockMvc.perform(get("/v1/libraryevents/applied-offsets/library-events/1?offset=41"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(failed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.applied").value(false))
+                .andExpect(jsonPath("$.failed").value(true));
+    }
+
+    @Test
+    void partitionOfAnotherInstanceIsNotFound() throws Exception {
+
+        MvcResult mvcResult = mockMvc.perform(get("/v1/libraryevents/applied-offsets/library-events/2?offset=1&timeoutMs=10"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isNotFound());
+    }
+}
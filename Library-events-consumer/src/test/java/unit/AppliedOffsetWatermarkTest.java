@@ -0,0 +1,115 @@
+package unit;
+
+import consumer.service.AppliedOffsetWatermark;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AppliedOffsetWatermarkTest {
+
+    private static final TopicPartition PARTITION = new TopicPartition("library-events", 0);
+
+    private final AppliedOffsetWatermark watermark = new AppliedOffsetWatermark();
+
+    @Test
+    void waiterCompletesOnceTheOffsetIsApplied() throws Exception {
+
+        // given
+        watermark.seed(PARTITION, 10);
+        CompletableFuture<Boolean> waiter = watermark.awaitApplied(PARTITION, 12, Duration.ofSeconds(10)).orElseThrow();
+
+        // when
+        watermark.advance(PARTITION, 11);
+        boolean doneBefore = waiter.isDone();
+        watermark.advance(PARTITION, 12);
+
+        // then
+        assertFalse(doneBefore);
+        assertTrue(waiter.get(1, TimeUnit.SECONDS));
+        assertEquals(12, watermark.appliedOffset(PARTITION).orElseThrow());
+        assertEquals(AppliedOffsetWatermark.Outcome.APPLIED, watermark.outcome(PARTITION, 12).orElseThrow());
+    }
+
+    @Test
+    void offsetsBeforeTheAssignedPositionAreAlreadyApplied() {
+
+        // when
+        watermark.seed(PARTITION, 10);
+
+        // then
+        assertTrue(watermark.awaitApplied(PARTITION, 9, Duration.ofSeconds(10)).orElseThrow().join());
+        assertEquals(9, watermark.appliedOffsets().get(PARTITION));
+    }
+
+    @Test
+    void waiterTimesOut() throws Exception {
+
+        // given
+        watermark.seed(PARTITION, 0);
+
+        // when
+        CompletableFuture<Boolean> waiter = watermark.awaitApplied(PARTITION, 5, Duration.ofMillis(50)).orElseThrow();
+
+        // then
+        assertFalse(waiter.get(5, TimeUnit.SECONDS));
+        watermark.advance(PARTITION, 3); // the watermark never goes back
+        assertEquals(3, watermark.appliedOffset(PARTITION).orElseThrow());
+        watermark.advance(PARTITION, 2);
+        assertEquals(3, watermark.appliedOffset(PARTITION).orElseThrow());
+    }
+
+    @Test
+    void partitionsOfOtherInstancesAreNotTracked() {
+
+        // when : a client asks for partitions this instance doesn't own.
+        for (int partition = 0; partition < 1000; partition++) {
+            var topicPartition = new TopicPartition("library-events", partition);
+            assertTrue(watermark.awaitApplied(topicPartition, 1, Duration.ofSeconds(10)).isEmpty());
+            assertTrue(watermark.appliedOffset(topicPartition).isEmpty());
+        }
+
+        // then : nothing was added.
+        assertTrue(watermark.appliedOffsets().isEmpty());
+    }
+
+    @Test
+    void revokedPartitionIsDroppedAndItsWaitersReleased() throws Exception {
+
+        // given
+        watermark.seed(PARTITION, 10);
+        CompletableFuture<Boolean> waiter = watermark.awaitApplied(PARTITION, 20, Duration.ofSeconds(10)).orElseThrow();
+
+        // when
+        watermark.revoke(PARTITION);
+
+        // then
+        assertFalse(waiter.get(1, TimeUnit.SECONDS));
+        assertTrue(watermark.appliedOffset(PARTITION).isEmpty());
+        assertTrue(watermark.appliedOffsets().isEmpty());
+    }
+
+    @Test
+    void failedOffsetIsDoneButNotApplied() throws Exception {
+
+        // given
+        watermark.seed(PARTITION, 10);
+        CompletableFuture<Boolean> waiter = watermark.awaitApplied(PARTITION, 10, Duration.ofSeconds(10)).orElseThrow();
+
+        // when : 10 failed and was skipped, 11 was applied.
+        watermark.fail(PARTITION, 10);
+        watermark.advance(PARTITION, 11);
+
+        // then
+        assertTrue(waiter.get(1, TimeUnit.SECONDS));
+        assertEquals(AppliedOffsetWatermark.Outcome.FAILED, watermark.outcome(PARTITION, 10).orElseThrow());
+        assertEquals(AppliedOffsetWatermark.Outcome.APPLIED, watermark.outcome(PARTITION, 11).orElseThrow());
+        assertEquals(AppliedOffsetWatermark.Outcome.PENDING, watermark.outcome(PARTITION, 12).orElseThrow());
+    }
+}
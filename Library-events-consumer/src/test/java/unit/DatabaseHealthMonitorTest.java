@@ -0,0 +1,95 @@
+package unit;
+
+import consumer.service.DatabaseHealthMonitor;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DatabaseHealthMonitorTest {
+
+    // fake clock, so we can move the time forward and check the samples leaving the window.
+    private final AtomicLong clock = new AtomicLong();
+
+    private final DatabaseHealthMonitor monitor = new DatabaseHealthMonitor(1000, 100, clock::get);
+
+    @Test
+    void snapshotErrorRateAndLatency() {
+
+        // given
+        for (int i = 1; i <= 20; i++) {
+            monitor.recordSuccess(TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        monitor.recordFailure(TimeUnit.MILLISECONDS.toNanos(500));
+        monitor.recordFailure(TimeUnit.MILLISECONDS.toNanos(500));
+
+        // when
+        var snapshot = monitor.snapshot();
+
+        // then
+        assertEquals(22, snapshot.samples());
+        assertEquals(2.0 / 22, snapshot.errorRate(), 0.0001);
+        assertEquals(500, snapshot.p95LatencyMs());
+    }
+
+    @Test
+    void samplesOutsideTheWindowAreIgnored() {
+
+        // given
+        monitor.recordFailure(TimeUnit.MILLISECONDS.toNanos(10));
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        monitor.recordSuccess(TimeUnit.MILLISECONDS.toNanos(10));
+
+        // when
+        var snapshot = monitor.snapshot();
+
+        // then
+        assertEquals(1, snapshot.samples());
+        assertEquals(0.0, snapshot.errorRate());
+
+        // and once everything is out of the window, the snapshot is empty.
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1500));
+        assertEquals(0, monitor.snapshot().samples());
+    }
+
+    @Test
+    void oldestSamplesAreOverwrittenWhenTheBufferIsFull() {
+
+        // given
+        var smallMonitor = new DatabaseHealthMonitor(1000, 4, clock::get);
+        smallMonitor.recordFailure(1);
+        smallMonitor.recordFailure(1);
+        for (int i = 0; i < 4; i++) {
+            smallMonitor.recordSuccess(1);
+        }
+
+        // when
+        var snapshot = smallMonitor.snapshot();
+
+        // then
+        assertEquals(4, snapshot.samples());
+        assertEquals(0.0, snapshot.errorRate());
+    }
+
+    @Test
+    void onlyExceptionsOfAnUnhealthyDatabaseAreFailures() {
+
+        // given
+        monitor.recordFailure(1, new DataIntegrityViolationException("duplicate key"));
+        monitor.recordFailure(1, new IllegalArgumentException("Not a valid library Event"));
+        monitor.recordFailure(1, new QueryTimeoutException("query timed out"));
+        monitor.recordFailure(1, new CannotGetJdbcConnectionException("connection refused"));
+
+        // when
+        var snapshot = monitor.snapshot();
+
+        // then
+        assertEquals(4, snapshot.samples());
+        assertEquals(0.5, snapshot.errorRate());
+    }
+}
@@ -0,0 +1,163 @@
+package unit;
+
+import consumer.eventsconsumer.DatabaseHealthPartitionGovernor;
+import consumer.eventsconsumer.LibraryEventsConsumer;
+import consumer.service.DatabaseHealthMonitor;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DatabaseHealthPartitionGovernorTest {
+
+    private static final List<TopicPartition> PARTITIONS = List.of(
+            new TopicPartition("library-events", 0), new TopicPartition("library-events", 1), new TopicPartition("library-events", 2));
+
+    // fake clock shared by the monitor (window) and the governor (resume step).
+    private final AtomicLong clock = new AtomicLong();
+
+    // window of 10 seconds, at least 4 samples to pause, pause at 50% errors or 2000 ms, resume at 10% errors and 500 ms, one partition every 5 seconds.
+    private final DatabaseHealthMonitor monitor = new DatabaseHealthMonitor(10_000, 100, clock::get);
+    private final KafkaListenerEndpointRegistry registry = mock(KafkaListenerEndpointRegistry.class);
+    private final MessageListenerContainer container = mock(MessageListenerContainer.class);
+    private final DatabaseHealthPartitionGovernor governor =
+            new DatabaseHealthPartitionGovernor(registry, monitor, 4, 0.5, 2000, 0.1, 500, 5000, clock::get);
+
+    // the pause requests, like the container keeps them.
+    private final Set<TopicPartition> paused = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        when(registry.getListenerContainer(LibraryEventsConsumer.LISTENER_ID)).thenReturn(container);
+        when(container.isRunning()).thenReturn(true);
+        when(container.getAssignedPartitions()).thenReturn(PARTITIONS);
+        when(container.isPartitionPauseRequested(any())).thenAnswer(invocation -> paused.contains(invocation.getArgument(0)));
+        doAnswer(invocation -> paused.add(invocation.getArgument(0))).when(container).pausePartition(any());
+        doAnswer(invocation -> paused.remove(invocation.getArgument(0))).when(container).resumePartition(any());
+    }
+
+    @Test
+    void pausesAllPartitionsWhenTheErrorRateIsTooHigh() {
+
+        // given
+        record(2, 2, 10);
+
+        // when
+        governor.checkDatabaseHealth();
+
+        // then
+        PARTITIONS.forEach(topicPartition -> verify(container).pausePartition(topicPartition));
+        assertEquals(3, paused.size());
+    }
+
+    @Test
+    void constraintViolationsDoNotPause() {
+
+        // given : a burst of bad library events, the database answers every one of them.
+        for (int i = 0; i < 10; i++) {
+            monitor.recordFailure(TimeUnit.MILLISECONDS.toNanos(10), new DataIntegrityViolationException("duplicate key"));
+        }
+
+        // when
+        governor.checkDatabaseHealth();
+
+        // then
+        verify(container, never()).pausePartition(any());
+        assertEquals(0.0, monitor.snapshot().errorRate());
+    }
+
+    @Test
+    void notEnoughSamplesDoesNotPause() {
+
+        // given
+        record(0, 3, 10);
+
+        // when
+        governor.checkDatabaseHealth();
+
+        // then
+        verify(container, never()).pausePartition(any());
+    }
+
+    @Test
+    void betweenTheThresholdsKeepsTheCurrentState() {
+
+        // given : paused, then 25% errors, not bad enough to pause, not good enough to resume.
+        record(2, 2, 10);
+        governor.checkDatabaseHealth();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        record(6, 2, 10);
+
+        // when
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        record(6, 2, 10); // same rate inside the new window.
+        governor.checkDatabaseHealth();
+
+        // then
+        verify(container, never()).resumePartition(any());
+        assertEquals(3, paused.size());
+    }
+
+    @Test
+    void resumesOnePartitionPerStepOnceHealthy() {
+
+        // given
+        record(2, 2, 10);
+        governor.checkDatabaseHealth();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        record(20, 0, 10);
+
+        // when / then : one partition, then nothing until the step is over, then the next one.
+        governor.checkDatabaseHealth();
+        assertEquals(2, paused.size());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        governor.checkDatabaseHealth();
+        assertEquals(2, paused.size());
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        governor.checkDatabaseHealth();
+        assertEquals(1, paused.size());
+        verify(container, times(2)).resumePartition(any());
+    }
+
+    @Test
+    void resumesWhenTheWindowIsEmpty() {
+
+        // given : paused, then nothing is saved (the partitions are paused) until the window is empty.
+        record(2, 2, 10);
+        governor.checkDatabaseHealth();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        // when
+        governor.checkDatabaseHealth();
+
+        // then
+        assertEquals(0, monitor.snapshot().samples());
+        verify(container, times(1)).resumePartition(any());
+    }
+
+    private void record(int successes, int failures, long latencyMs) {
+        for (int i = 0; i < successes; i++) {
+            monitor.recordSuccess(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+        for (int i = 0; i < failures; i++) {
+            monitor.recordFailure(TimeUnit.MILLISECONDS.toNanos(latencyMs));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package unit;
+
+import consumer.config.ExportModeEnvironmentPostProcessor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.SpringApplication;
+import org.springframework.mock.env.MockEnvironment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExportModeEnvironmentPostProcessorTest {
+
+    private final ExportModeEnvironmentPostProcessor postProcessor = new ExportModeEnvironmentPostProcessor();
+
+    @Test
+    void exportFileTurnsOffTheWebServerAndTheListeners() {
+
+        // given : set from anywhere (-D, environment variable, yml), not only a --library-events.export.file= argument.
+        var environment = new MockEnvironment().withProperty("library-events.export.file", "library-events.ndjson");
+
+        // when
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        // then
+        assertEquals("none", environment.getProperty("spring.main.web-application-type"));
+        assertEquals("false", environment.getProperty("library-events.listener.auto-startup"));
+    }
+
+    @Test
+    void explicitSettingsWin() {
+
+        // given
+        var environment = new MockEnvironment()
+                .withProperty("library-events.export.file", "library-events.ndjson")
+                .withProperty("spring.main.web-application-type", "servlet");
+
+        // when
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        // then
+        assertEquals("servlet", environment.getProperty("spring.main.web-application-type"));
+    }
+
+    @Test
+    void withoutExportFileNothingChanges() {
+
+        // given
+        var environment = new MockEnvironment();
+
+        // when
+        postProcessor.postProcessEnvironment(environment, new SpringApplication());
+
+        // then
+        assertNull(environment.getProperty("spring.main.web-application-type"));
+        assertNull(environment.getProperty("library-events.listener.auto-startup"));
+    }
+}
@@ -0,0 +1,32 @@
+package unit;
+
+import consumer.jpa.ShardAwareSequenceGenerator;
+import org.hibernate.id.IdentifierGenerationException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardAwareSequenceGeneratorTest {
+
+    @Test
+    void theIdTellsTheShard() {
+        for (int shardIndex = 0; shardIndex < 8; shardIndex++) {
+            assertEquals(shardIndex, ShardAwareSequenceGenerator.libraryEventId(12345, 8, shardIndex) % 8);
+        }
+    }
+
+    @Test
+    void lastIdOfTheShardThenAClearError() {
+
+        // given : the last sequence value the shard 7 of 8 can turn into an int id.
+        long lastSequenceValue = (Integer.MAX_VALUE - 7) / 8;
+
+        // when / then
+        assertEquals(lastSequenceValue * 8 + 7, ShardAwareSequenceGenerator.libraryEventId(lastSequenceValue, 8, 7));
+        var exception = assertThrows(IdentifierGenerationException.class,
+                () -> ShardAwareSequenceGenerator.libraryEventId(lastSequenceValue + 1, 8, 7));
+        assertTrue(exception.getMessage().contains("No library event id left on the shard 7"));
+    }
+}
@@ -0,0 +1,94 @@
+package unit;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import consumer.eventsconsumer.ZstdDictionaryStringDeserializer;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/*
+    The values are compressed here exactly like the producer's ZstdDictionaryStringSerializer does it
+    (same dictionary, no dictionary id in the frame, content size in the frame, dictionary id in the "zstd-dict-id" header).
+*/
+class ZstdDictionaryStringDeserializerTest {
+
+    private static final String LIBRARY_EVENT = "{\"LibraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"BookId\":123,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+    private final ZstdDictionaryStringDeserializer deserializer = new ZstdDictionaryStringDeserializer();
+    private ZstdDictCompress dictionary;
+    private ZstdCompressCtx compressCtx;
+    private byte[] dictionaryIdHeader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        deserializer.configure(Map.of(ZstdDictionaryStringDeserializer.DICTIONARIES_CONFIG, "classpath:library-events.zdict",
+                ZstdDictionaryStringDeserializer.MAX_VALUE_BYTES_CONFIG, "4096"), false);
+
+        byte[] dictionaryBytes;
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("library-events.zdict")) {
+            dictionaryBytes = inputStream.readAllBytes();
+        }
+        dictionary = new ZstdDictCompress(dictionaryBytes, 3);
+        compressCtx = new ZstdCompressCtx().loadDict(dictionary).setDictID(false).setContentSize(true);
+        dictionaryIdHeader = ByteBuffer.allocate(Integer.BYTES).putInt((int) Zstd.getDictIdFromDict(dictionaryBytes)).array();
+    }
+
+    @AfterEach
+    void tearDown() {
+        deserializer.close();
+        compressCtx.close();
+        dictionary.close();
+    }
+
+    @Test
+    void roundTrip() {
+
+        // given
+        var headers = new RecordHeaders().add(ZstdDictionaryStringDeserializer.DICTIONARY_ID_HEADER, dictionaryIdHeader);
+        byte[] compressed = compressCtx.compress(LIBRARY_EVENT.getBytes(StandardCharsets.UTF_8));
+
+        // when / then
+        assertEquals(LIBRARY_EVENT, deserializer.deserialize("library-events", headers, compressed));
+    }
+
+    @Test
+    void withoutTheHeaderTheValueIsPlainText() {
+        assertEquals(LIBRARY_EVENT, deserializer.deserialize("library-events", new RecordHeaders(), LIBRARY_EVENT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void malformedRecordsAreRejected() {
+
+        byte[] compressed = compressCtx.compress(LIBRARY_EVENT.getBytes(StandardCharsets.UTF_8));
+
+        // short header
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events",
+                new RecordHeaders().add(ZstdDictionaryStringDeserializer.DICTIONARY_ID_HEADER, new byte[]{1, 2}), compressed));
+
+        var headers = new RecordHeaders().add(ZstdDictionaryStringDeserializer.DICTIONARY_ID_HEADER, dictionaryIdHeader);
+
+        // not a zstd frame, the size is unknown
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events", headers, LIBRARY_EVENT.getBytes(StandardCharsets.UTF_8)));
+
+        // bigger than max-value-bytes
+        byte[] big = compressCtx.compress("x".repeat(10_000).getBytes(StandardCharsets.UTF_8));
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events", headers, big));
+
+        // corrupted frame
+        byte[] corrupted = Arrays.copyOf(compressed, compressed.length - 3);
+        assertThrows(SerializationException.class, () -> deserializer.deserialize("library-events", headers, corrupted));
+    }
+}
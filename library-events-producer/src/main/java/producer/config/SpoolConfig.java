@@ -0,0 +1,44 @@
+package producer.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import producer.eventsproducer.LibraryEventsSpool;
+import producer.eventsproducer.LibraryEventsSpoolReplayer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/*
+    The spool keeps the library events that failed to be sent to Kafka on the local disk, and the replayer sends them again
+    once the cluster is healthy. It is turned on with library-events.spool.enabled=true (see application.yml).
+
+    @EnableScheduling : the INTERVAL fsync and the retention run on the scheduler, the replay has its own thread (see LibraryEventsSpoolReplayer).
+*/
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "library-events.spool.enabled", havingValue = "true")
+public class SpoolConfig {
+
+    @Bean
+    public LibraryEventsSpool libraryEventsSpool(@Value("${library-events.spool.directory}") String directory,
+                                                 @Value("${library-events.spool.segment-bytes:67108864}") int segmentBytes,
+                                                 @Value("${library-events.spool.fsync:INTERVAL}") LibraryEventsSpool.FsyncPolicy fsync,
+                                                 @Value("${library-events.spool.retention-ms:604800000}") long retentionMs,
+                                                 @Value("${library-events.spool.retention-bytes:1073741824}") long retentionBytes) throws IOException {
+        return new LibraryEventsSpool(Path.of(directory), segmentBytes, fsync, retentionMs, retentionBytes);
+    }
+
+    @Bean
+    public LibraryEventsSpoolReplayer libraryEventsSpoolReplayer(LibraryEventsSpool libraryEventsSpool,
+                                                                 KafkaTemplate<Integer, String> kafkaTemplate,
+                                                                 @Value("${spring.kafka.topic}") String topic,
+                                                                 @Value("${library-events.spool.replay-batch-size:1000}") int batchSize,
+                                                                 @Value("${library-events.spool.replay-send-timeout-ms:30000}") long sendTimeoutMs,
+                                                                 @Value("${library-events.spool.replay-interval-ms:5000}") long replayIntervalMs) {
+        return new LibraryEventsSpoolReplayer(libraryEventsSpool, kafkaTemplate, topic, batchSize, sendTimeoutMs, replayIntervalMs);
+    }
+}
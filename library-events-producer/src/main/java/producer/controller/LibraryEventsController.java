@@ -5,7 +5,6 @@ import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
@@ -13,10 +12,11 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RestController;
 import producer.dto.LibraryEvent;
 import producer.dto.LibraryEventType;
+import producer.eventsproducer.LibraryEventSpooledException;
 import producer.eventsproducer.LibraryEventsProducer;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @Slf4j
@@ -25,25 +25,39 @@ public class LibraryEventsController {
     @Autowired
     public LibraryEventsProducer libraryEventsProducer;
 
+    // these headers tell the client where its event landed, so it can wait on the consumer side until that offset is applied
+    // (GET /v1/libraryevents/applied-offsets/{topic}/{partition}?offset=... on the consumer), instead of polling with sleeps.
+    public static final String TOPIC_HEADER = "Library-Event-Topic";
+    public static final String PARTITION_HEADER = "Library-Event-Partition";
+    public static final String OFFSET_HEADER = "Library-Event-Offset";
+
     @PostMapping("/v1/libraryevent")
-    public ResponseEntity<LibraryEvent> postEvent(@RequestBody @Valid LibraryEvent libraryEvent) throws JsonProcessingException, ExecutionException, InterruptedException, TimeoutException {
+    public CompletableFuture<ResponseEntity<LibraryEvent>> postEvent(@RequestBody @Valid LibraryEvent libraryEvent) throws JsonProcessingException {
         log.info("LibraryEvent: {} ", libraryEvent);
 
         // So when we receive the request body it's going to be forwarded to the sendLibraryEvent.
         // and this is a function which is going to take care of sending the messages into the Kafka topic using the KafkaTemplate (asynchronously).
-        libraryEventsProducer.sendLibraryEvent(libraryEvent);
-
-        // this is a function which is going to take care of sending the messages into the Kafka topic using the KafkaTemplate (synchronously).
-        // earlier, the after sending event log below, was present before the message sent successfully from the LibraryEventsProducer class is completed.
-        // but in this case, the "After Sending LibraryEvent" which is the log below, comes after the message sent successfully logger from the Kafka Producer call.
-        libraryEventsProducer.sendLibraryEventSynchronous(libraryEvent);
-
-        // this log file will be executed even before the above sendLibraryEven producer call fulfilled,
-        // so this call got completed, and we got the 201 message also, So the 201 message has been sent even before the message is being sent to the Kafka cluster.
-        // the last thing you will find the handleSuccess log message printed in the console after the post mapping is completed.
-        log.info("After Sending LibraryEvent");
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(libraryEvent);
+        // the request thread is not blocked, spring MVC sends the 201 once the CompletableFuture completes, with the partition and offset from the SendResult.
+        // (libraryEventsProducer.sendLibraryEventSynchronous() is the blocking version of the same call, it's kept in the producer for comparing purpose.)
+        return libraryEventsProducer.sendLibraryEvent(libraryEvent)
+                .thenApply(sendResult -> {
+                    log.info("After Sending LibraryEvent");
+                    return ResponseEntity.status(HttpStatus.CREATED)
+                            .header(TOPIC_HEADER, sendResult.getRecordMetadata().topic())
+                            .header(PARTITION_HEADER, String.valueOf(sendResult.getRecordMetadata().partition()))
+                            .header(OFFSET_HEADER, String.valueOf(sendResult.getRecordMetadata().offset()))
+                            .body(libraryEvent);
+                })
+                .exceptionally(throwable -> {
+                    // the event is in the spool and is going to be sent later, there is no offset to give back yet.
+                    // any other failure (no spool, or the append to the spool failed too) means the event was not taken : 503, the client has to retry.
+                    Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                    if (cause instanceof LibraryEventSpooledException) {
+                        return ResponseEntity.status(HttpStatus.ACCEPTED).body(libraryEvent);
+                    }
+                    log.error("LibraryEvent not sent : {} ", cause.getMessage());
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+                });
     }
 
     @PutMapping("/v1/libraryevent")
@@ -0,0 +1,85 @@
+package producer.eventsproducer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.ZstdDictTrainer;
+import producer.dto.Book;
+import producer.dto.LibraryEvent;
+import producer.dto.LibraryEventType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+    Trains the zstd dictionary used by the ZstdDictionaryStringSerializer.
+
+    The samples are built from the library-event-create.json / library-event-update.json templates, with random ids, book names
+    and authors, and written with the ObjectMapper so the dictionary learns the exact JSON the producer sends.
+    The trained dictionary has to be copied to the consumer resources as well.
+
+    Usage : java producer.eventsproducer.LibraryEventDictionaryTrainer <output file> [samples] [dictionary size]
+        e.g. library-events-producer/src/main/resources/library-events.zdict 20000 2048
+*/
+public class LibraryEventDictionaryTrainer {
+
+    private static final String[] TEMPLATES = {"library-event-create.json", "library-event-update.json"};
+    private static final String[] WORDS = {"Kafka", "Spring", "Boot", "Java", "Streams", "Microservices", "Using", "in", "Action",
+            "Guide", "Design", "Patterns", "Effective", "Reactive", "Cloud", "Native", "Data", "Intensive", "Applications", "2.X"};
+    private static final String[] AUTHORS = {"Sawsaw", "Dilip", "Martin Kleppmann", "Joshua Bloch", "Neha Narkhede",
+            "Gwen Shapira", "Craig Walls", "Josh Long", "Brian Goetz", "Venkat Subramaniam"};
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage : LibraryEventDictionaryTrainer <output file> [samples] [dictionary size]");
+            System.exit(1);
+        }
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int dictionarySize = args.length > 2 ? Integer.parseInt(args[2]) : 2048;
+
+        // same as the ObjectMapper spring boot configures for the application.
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        List<String> events = sampleEvents(objectMapper, samples, 42);
+        ZstdDictTrainer trainer = new ZstdDictTrainer(events.stream().mapToInt(String::length).sum(), dictionarySize);
+        events.forEach(event -> trainer.addSample(event.getBytes(StandardCharsets.UTF_8)));
+
+        byte[] dictionary = trainer.trainSamples();
+        Files.write(Path.of(args[0]), dictionary);
+        System.out.println("Trained a dictionary of " + dictionary.length + " bytes from " + samples + " sample events into " + args[0]);
+    }
+
+    // also used by the compression benchmark, so it compares the codecs on the same kind of events.
+    public static List<String> sampleEvents(ObjectMapper objectMapper, int count, long seed) throws IOException {
+        List<LibraryEvent> templates = new ArrayList<>();
+        for (String template : TEMPLATES) {
+            try (InputStream inputStream = LibraryEventDictionaryTrainer.class.getClassLoader().getResourceAsStream(template)) {
+                templates.add(objectMapper.readValue(inputStream, LibraryEvent.class));
+            }
+        }
+
+        Random random = new Random(seed);
+        List<String> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LibraryEvent template = templates.get(random.nextInt(templates.size()));
+            events.add(objectMapper.writeValueAsString(randomEvent(template, random)));
+        }
+        return events;
+    }
+
+    private static LibraryEvent randomEvent(LibraryEvent template, Random random) {
+        StringBuilder bookName = new StringBuilder();
+        for (int i = 0, words = 2 + random.nextInt(4); i < words; i++) {
+            bookName.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        Book book = new Book(random.nextInt(100_000), bookName.toString(), AUTHORS[random.nextInt(AUTHORS.length)]);
+
+        Integer libraryEventId = template.libraryEventType() == LibraryEventType.NEW ? null : random.nextInt(100_000);
+        return new LibraryEvent(libraryEventId, template.libraryEventType(), book);
+    }
+}
@@ -0,0 +1,14 @@
+package producer.eventsproducer;
+
+// the library event was not sent to Kafka, but it's safe in the spool and the LibraryEventsSpoolReplayer is going to send it later.
+public class LibraryEventSpooledException extends RuntimeException {
+
+    public LibraryEventSpooledException(Integer key) {
+        super("Library event spooled for the key " + key + " , it is going to be sent once the spool is replayed");
+    }
+
+    // the send failed (cause), but the append to the spool worked.
+    public LibraryEventSpooledException(Integer key, Throwable cause) {
+        super("Library event spooled for the key " + key + " after a failed send, it is going to be sent once the spool is replayed", cause);
+    }
+}
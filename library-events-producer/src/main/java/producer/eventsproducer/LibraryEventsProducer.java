@@ -3,13 +3,16 @@ package producer.eventsproducer;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 import producer.dto.LibraryEvent;
 
+import java.io.IOException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -22,13 +25,18 @@ public class LibraryEventsProducer {
     private final KafkaTemplate<Integer, String> kafkaTemplate;
     ObjectMapper objectMapper;
 
+    // the spool is optional (library-events.spool.enabled), when it is there, the events that failed to be sent are kept on disk and replayed later.
+    private final LibraryEventsSpool libraryEventsSpool;
+
     // explicitly providing the topic to which this message needs to be sent.
     @Value("${spring.kafka.topic}")
     public String topic;
 
-    public LibraryEventsProducer(KafkaTemplate<Integer, String> kafkaTemplate, ObjectMapper objectMapper) {
+    public LibraryEventsProducer(KafkaTemplate<Integer, String> kafkaTemplate, ObjectMapper objectMapper,
+                                 ObjectProvider<LibraryEventsSpool> libraryEventsSpool) {
         this.kafkaTemplate = kafkaTemplate;
         this.objectMapper = objectMapper;
+        this.libraryEventsSpool = libraryEventsSpool.getIfAvailable();
     }
 
     // this call is going to send events to a kafka topic, then return a type named Completablefuture, that Completablefuture is of type future,
@@ -38,19 +46,31 @@ public class LibraryEventsProducer {
         var key = libraryEvent.LibraryEventId();
         var value = objectMapper.writeValueAsString(libraryEvent);
 
+        // while the spool still has events to replay, the new ones go behind them in the spool, otherwise a new UPDATE
+        // could reach the topic before an older spooled UPDATE of the same library event, and be overwritten by it downstream.
+        // (the sends already in flight when the first failure happens can still get ahead of it, the spool can't help with those.)
+        if (libraryEventsSpool != null && !libraryEventsSpool.isEmpty()) {
+            return spool(key, value);
+        }
+
         // So when we make kafkaTemplate.send call, what it returns is a completeable feature (asynchronous calls).
         // always remember these two steps that happens behind the scenes for you :
         // 1. first it will trigger (blocking call) - to get the metadata about the kafka cluster.
         // 2. then the Asynchronous Send message happens - Return a CompletableFuture.
         var completableFuture = kafkaTemplate.send(topic, key, value);  // kafkaTemplate.send() Send the data to the provided topic with the provided key and no partition.
 
+        // a failed send completes with a LibraryEventSpooledException only when the event really is in the spool,
+        // otherwise with the send failure : the caller can tell "sent later" from "lost".
         return completableFuture
-                .whenComplete((sendResult, throwable) -> {
-                    if (throwable != null) {
-                        handleFailure(key, value, throwable);
-                    } else {
+                .handle((sendResult, throwable) -> {
+                    if (throwable == null) {
                         handleSuccess(key, value, sendResult);
+                        return sendResult;
                     }
+                    if (handleFailure(key, value, throwable)) {
+                        throw new LibraryEventSpooledException(key, throwable);
+                    }
+                    throw throwable instanceof CompletionException completionException ? completionException : new CompletionException(throwable);
                 });
     }
 
@@ -80,8 +100,34 @@ public class LibraryEventsProducer {
         return sendResult;
     }
 
-    private void handleFailure(Integer key, String value, Throwable ex) {
+    // instead of losing the event we write it to the spool, the LibraryEventsSpoolReplayer is going to send it again
+    // once the kafka cluster is available. returns true when the event is in the spool.
+    private boolean handleFailure(Integer key, String value, Throwable ex) {
         log.error("Error Sending the Message and the exception is {}", ex.getMessage(), ex);
+
+        if (libraryEventsSpool == null) {
+            return false;
+        }
+        try {
+            libraryEventsSpool.append(key, value);
+            log.info("Message spooled for the key : {} ", key);
+            return true;
+        } catch (IOException e) {
+            log.error("Error Spooling the Message for the key : {} , the message is lost {}", key, value, e);
+            ex.addSuppressed(e);
+            return false;
+        }
+    }
+
+    private CompletableFuture<SendResult<Integer, String>> spool(Integer key, String value) {
+        try {
+            libraryEventsSpool.append(key, value);
+            log.info("Message spooled behind the events waiting for the replay, for the key : {} ", key);
+            return CompletableFuture.failedFuture(new LibraryEventSpooledException(key));
+        } catch (IOException e) {
+            log.error("Error Spooling the Message for the key : {} , the message is lost {}", key, value, e);
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     private void handleSuccess(Integer key, String value, SendResult<Integer, String> result) {
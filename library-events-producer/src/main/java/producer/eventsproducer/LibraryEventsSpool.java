@@ -0,0 +1,340 @@
+package producer.eventsproducer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/*
+    Write-ahead spool for the library events that could not be sent to Kafka (broker down, send timed out, ...).
+
+    The spool is an append-only log split into fixed size segments, each segment is a memory-mapped file named after its id :
+        00000000000000000000.log, 00000000000000000001.log, ...
+
+    Record layout inside a segment :
+        int length | int crc32 | long timestamp | byte hasKey | int key | value bytes (UTF-8)
+        "length" covers everything after the crc, a length of 0 marks the end of the written data (the mapped file is zero filled).
+
+    The LibraryEventsSpoolReplayer reads the records in order (peek), sends them to Kafka, and then commits the position
+    of the last record sent. The commit position is saved in the "checkpoint" file, so the replay continues where it stopped after a restart.
+    Segments that are fully replayed are deleted right away, the others are deleted by the retention (age or total size).
+
+    FsyncPolicy :
+        ALWAYS   -> force the segment to disk after every append (safest, slowest).
+        INTERVAL -> force the segment to disk every fsync-interval-ms (see LibraryEventsSpoolReplayer.flush()).
+        NEVER    -> let the OS write the pages back, the events survive a process crash but not a machine crash.
+*/
+@Slf4j
+public class LibraryEventsSpool implements Closeable {
+
+    public enum FsyncPolicy {
+        ALWAYS,
+        INTERVAL,
+        NEVER
+    }
+
+    public record SpooledEvent(Integer key, String value, long timestamp, long segmentId, int nextPosition) {
+    }
+
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES;               // length + crc
+    private static final int BODY_PREFIX_SIZE = Long.BYTES + Byte.BYTES + Integer.BYTES; // timestamp + hasKey + key
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsyncPolicy;
+    private final long retentionMs;
+    private final long retentionBytes;
+
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment writeSegment;
+    private long readSegmentId;
+    private int readPosition;
+    private boolean dirty;
+
+    public LibraryEventsSpool(Path directory, int segmentBytes, FsyncPolicy fsyncPolicy, long retentionMs, long retentionBytes) throws IOException {
+        if (segmentBytes <= HEADER_SIZE + BODY_PREFIX_SIZE) {
+            throw new IllegalArgumentException("segment-bytes is too small : " + segmentBytes);
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.fsyncPolicy = fsyncPolicy;
+        this.retentionMs = retentionMs;
+        this.retentionBytes = retentionBytes;
+
+        Files.createDirectories(directory);
+        open();
+    }
+
+    // load the existing segments (if any) and the replay checkpoint, then position the writer at the end of the last segment.
+    private void open() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path path : files.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX)).toList()) {
+                String name = path.getFileName().toString();
+                long id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(id, Segment.open(id, path, segmentBytes));
+            }
+        }
+
+        if (segments.isEmpty()) {
+            writeSegment = createSegment(0);
+        } else {
+            writeSegment = segments.lastEntry().getValue();
+        }
+
+        readSegmentId = segments.firstKey();
+        readPosition = 0;
+
+        Path checkpoint = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpoint)) {
+            String[] parts = Files.readString(checkpoint).trim().split(" ");
+            long segmentId = Long.parseLong(parts[0]);
+            if (segments.containsKey(segmentId)) {
+                readSegmentId = segmentId;
+                readPosition = Integer.parseInt(parts[1]);
+            } else if (segmentId > segments.firstKey()) {
+                // the checkpoint points past the segments we have, everything left has been replayed already.
+                readSegmentId = writeSegment.id;
+                readPosition = writeSegment.writePosition;
+            }
+        }
+
+        log.info("Opened the library events spool {} with {} segment(s), replay position {}:{} ",
+                directory, segments.size(), readSegmentId, readPosition);
+    }
+
+    public synchronized void append(Integer key, String value) throws IOException {
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = BODY_PREFIX_SIZE + valueBytes.length;
+        int recordLength = HEADER_SIZE + bodyLength;
+
+        if (recordLength > segmentBytes) {
+            throw new IOException("Library event of " + recordLength + " bytes does not fit in a spool segment of " + segmentBytes + " bytes");
+        }
+
+        if (writeSegment.writePosition + recordLength > segmentBytes) {
+            roll();
+        }
+
+        long timestamp = System.currentTimeMillis();
+        MappedByteBuffer buffer = writeSegment.buffer;
+        int position = writeSegment.writePosition;
+
+        buffer.putLong(position + HEADER_SIZE, timestamp);
+        buffer.put(position + HEADER_SIZE + Long.BYTES, (byte) (key == null ? 0 : 1));
+        buffer.putInt(position + HEADER_SIZE + Long.BYTES + Byte.BYTES, key == null ? 0 : key);
+        buffer.put(position + HEADER_SIZE + BODY_PREFIX_SIZE, valueBytes);
+        buffer.putInt(position + Integer.BYTES, crc(buffer, position + HEADER_SIZE, bodyLength));
+        buffer.putInt(position, bodyLength); // written last, the record becomes visible only once it is complete.
+
+        writeSegment.writePosition += recordLength;
+        writeSegment.lastTimestamp = timestamp;
+
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            buffer.force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    // returns up to "max" events from the replay position, without moving it. Call commit() once they are sent.
+    public synchronized List<SpooledEvent> peek(int max) {
+        List<SpooledEvent> events = new ArrayList<>(Math.min(max, 1024));
+        long segmentId = readSegmentId;
+        int position = readPosition;
+
+        while (events.size() < max) {
+            Segment segment = segments.get(segmentId);
+            if (segment == null) {
+                break;
+            }
+            if (position >= segment.writePosition) {
+                Long nextId = segments.higherKey(segmentId);
+                if (nextId == null) {
+                    break;
+                }
+                segmentId = nextId;
+                position = 0;
+                continue;
+            }
+
+            MappedByteBuffer buffer = segment.buffer;
+            int bodyLength = buffer.getInt(position);
+            int body = position + HEADER_SIZE;
+            long timestamp = buffer.getLong(body);
+            boolean hasKey = buffer.get(body + Long.BYTES) == 1;
+            int key = buffer.getInt(body + Long.BYTES + Byte.BYTES);
+            byte[] valueBytes = new byte[bodyLength - BODY_PREFIX_SIZE];
+            buffer.get(body + BODY_PREFIX_SIZE, valueBytes);
+
+            position = body + bodyLength;
+            events.add(new SpooledEvent(hasKey ? key : null, new String(valueBytes, StandardCharsets.UTF_8), timestamp, segmentId, position));
+        }
+        return events;
+    }
+
+    // true when every spooled event has been replayed (and committed).
+    public synchronized boolean isEmpty() {
+        long segmentId = readSegmentId;
+        int position = readPosition;
+        while (true) {
+            Segment segment = segments.get(segmentId);
+            if (segment == null) {
+                return true;
+            }
+            if (position < segment.writePosition) {
+                return false;
+            }
+            Long nextId = segments.higherKey(segmentId);
+            if (nextId == null) {
+                return true;
+            }
+            segmentId = nextId;
+            position = 0;
+        }
+    }
+
+    // moves the replay position right after the given event, and deletes the segments that are fully replayed.
+    public synchronized void commit(SpooledEvent lastSent) throws IOException {
+        readSegmentId = lastSent.segmentId();
+        readPosition = lastSent.nextPosition();
+
+        for (Long id : new ArrayList<>(segments.headMap(readSegmentId).keySet())) {
+            deleteSegment(segments.get(id));
+        }
+        writeCheckpoint();
+    }
+
+    // used by the INTERVAL fsync policy.
+    public synchronized void flush() {
+        if (dirty && fsyncPolicy == FsyncPolicy.INTERVAL) {
+            writeSegment.buffer.force();
+            dirty = false;
+        }
+    }
+
+    // drops the oldest segments that are older than retention-ms, or while the spool is bigger than retention-bytes.
+    // the segment we are writing to is never dropped.
+    public synchronized void enforceRetention() throws IOException {
+        long now = System.currentTimeMillis();
+        boolean dropped = false;
+
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            boolean expired = retentionMs > 0 && oldest.lastTimestamp > 0 && now - oldest.lastTimestamp > retentionMs;
+            boolean tooBig = retentionBytes > 0 && (long) segments.size() * segmentBytes > retentionBytes;
+            if (!expired && !tooBig) {
+                break;
+            }
+            if (oldest.id >= readSegmentId) {
+                log.warn("Dropping spool segment {} before it was replayed (expired : {} , spool too big : {})", oldest.path, expired, tooBig);
+            }
+            deleteSegment(oldest);
+            dropped = true;
+        }
+
+        if (dropped && !segments.containsKey(readSegmentId)) {
+            readSegmentId = segments.firstKey();
+            readPosition = 0;
+            writeCheckpoint();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        for (Segment segment : segments.values()) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private void roll() throws IOException {
+        if (fsyncPolicy != FsyncPolicy.NEVER) {
+            writeSegment.buffer.force();
+        }
+        dirty = false;
+        writeSegment = createSegment(writeSegment.id + 1);
+    }
+
+    private Segment createSegment(long id) throws IOException {
+        Segment segment = Segment.open(id, directory.resolve(String.format("%020d%s", id, SEGMENT_SUFFIX)), segmentBytes);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private void deleteSegment(Segment segment) throws IOException {
+        segments.remove(segment.id);
+        segment.channel.close();
+        Files.deleteIfExists(segment.path);
+    }
+
+    // write to a temporary file first, then move it, so a crash never leaves a half written checkpoint.
+    private void writeCheckpoint() throws IOException {
+        Path temporary = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        Files.writeString(temporary, readSegmentId + " " + readPosition);
+        Files.move(temporary, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int crc(MappedByteBuffer buffer, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.slice(offset, length));
+        return (int) crc32.getValue();
+    }
+
+    private static final class Segment {
+        private final long id;
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private long lastTimestamp;
+
+        private Segment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // maps the file and scans it to find where the valid records end (a torn write after a crash fails the crc check).
+        private static Segment open(long id, Path path, int segmentBytes) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int size = (int) Math.max(channel.size(), segmentBytes);
+            Segment segment = new Segment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+
+            int position = 0;
+            while (position + HEADER_SIZE <= size) {
+                int bodyLength = segment.buffer.getInt(position);
+                if (bodyLength < BODY_PREFIX_SIZE || position + HEADER_SIZE + bodyLength > size) {
+                    break;
+                }
+                if (segment.buffer.getInt(position + Integer.BYTES) != crc(segment.buffer, position + HEADER_SIZE, bodyLength)) {
+                    log.warn("Corrupted record in spool segment {} at position {}, the rest of the segment is ignored", path, position);
+                    break;
+                }
+                segment.lastTimestamp = segment.buffer.getLong(position + HEADER_SIZE);
+                position += HEADER_SIZE + bodyLength;
+            }
+            // zero the tail, so a partially written record is never mistaken for a valid one later on.
+            for (int i = position; i < Math.min(position + HEADER_SIZE, size); i++) {
+                segment.buffer.put(i, (byte) 0);
+            }
+            segment.writePosition = position;
+            return segment;
+        }
+    }
+}
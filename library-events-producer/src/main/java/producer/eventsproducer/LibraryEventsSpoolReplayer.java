@@ -0,0 +1,132 @@
+package producer.eventsproducer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import producer.eventsproducer.LibraryEventsSpool.SpooledEvent;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+    Sends the spooled library events back to Kafka, in the order they were spooled, once the cluster is reachable again.
+
+    The events are sent in batches (asynchronous sends, so the Kafka producer can batch them together), and the spool position
+    is only committed after the whole batch is acknowledged. If the batch fails we stop and try again on the next run,
+    the events of that batch that did make it are sent once more (at-least-once, same as the Kafka producer retries).
+
+    After a failure the next run sends a single event first, to probe the cluster before sending full batches again.
+
+    The replay runs on its own thread (not on the spring scheduler) : during an outage a replay run blocks in kafkaTemplate.send()
+    (waiting for the metadata, up to max.block.ms) and then on the acknowledgements, and the INTERVAL fsync (flush()) must keep
+    running on the scheduler meanwhile, that's exactly when the spool is taking writes.
+*/
+@Slf4j
+public class LibraryEventsSpoolReplayer implements SmartLifecycle {
+
+    private final LibraryEventsSpool spool;
+    private final KafkaTemplate<Integer, String> kafkaTemplate;
+    private final String topic;
+    private final int batchSize;
+    private final long sendTimeoutMs;
+    private final long replayIntervalMs;
+
+    private boolean lastReplayFailed;
+    private ScheduledExecutorService replayExecutor;
+
+    public LibraryEventsSpoolReplayer(LibraryEventsSpool spool, KafkaTemplate<Integer, String> kafkaTemplate,
+                                      String topic, int batchSize, long sendTimeoutMs, long replayIntervalMs) {
+        this.spool = spool;
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
+        this.batchSize = batchSize;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.replayIntervalMs = replayIntervalMs;
+    }
+
+    // only called from the replay thread (or from a test), so lastReplayFailed needs no locking.
+    public void replay() {
+        long replayed = 0;
+
+        while (true) {
+            List<SpooledEvent> batch = spool.peek(lastReplayFailed ? 1 : batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            try {
+                send(batch);
+                spool.commit(batch.get(batch.size() - 1));
+            } catch (Exception e) {
+                lastReplayFailed = true;
+                log.warn("Replay of the spooled library events failed, {} event(s) replayed so far, retrying later : {}", replayed, e.getMessage());
+                return;
+            }
+
+            lastReplayFailed = false;
+            replayed += batch.size();
+        }
+
+        if (replayed > 0) {
+            log.info("Replayed {} spooled library event(s) to the topic {}", replayed, topic);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${library-events.spool.fsync-interval-ms:1000}")
+    public void flush() {
+        spool.flush();
+    }
+
+    @Scheduled(fixedDelayString = "${library-events.spool.retention-check-interval-ms:60000}")
+    public void enforceRetention() throws IOException {
+        spool.enforceRetention();
+    }
+
+    @Override
+    public synchronized void start() {
+        replayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "library-events-spool-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        replayExecutor.scheduleWithFixedDelay(this::replayQuietly, replayIntervalMs, replayIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+            replayExecutor = null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return replayExecutor != null;
+    }
+
+    // an exception would cancel the next runs of scheduleWithFixedDelay.
+    private void replayQuietly() {
+        try {
+            replay();
+        } catch (RuntimeException e) {
+            log.error("Unexpected error replaying the spooled library events", e);
+        }
+    }
+
+    private void send(List<SpooledEvent> batch) throws Exception {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<SendResult<Integer, String>>[] futures = new CompletableFuture[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            SpooledEvent event = batch.get(i);
+            futures[i] = kafkaTemplate.send(topic, event.key(), event.value());
+        }
+        CompletableFuture.allOf(futures).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,114 @@
+package producer.eventsproducer;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/*
+    Value serializer that compresses every library event on its own, with a zstd dictionary trained on sample library events
+    (see LibraryEventDictionaryTrainer).
+
+    The library events are small JSON messages that repeat the same field names over and over ("libraryEventType", "bookName", ...),
+    batch compression only gets to see a handful of them at a time, while the dictionary already knows them.
+
+    The dictionary id is sent in the "zstd-dict-id" header, so the consumer knows which dictionary to decompress with
+    (and a record without the header is a plain UTF-8 string). The header name is kept short on purpose, it is sent with every record,
+    and for the same reason the dictionary id is left out of the zstd frame itself.
+
+    Batch compression (compression.type) still does better once the producer batches tens of events together,
+    see LibraryEventCompressionBenchmark for the numbers.
+
+    To turn it on (application.yml) :
+        value-serializer: producer.eventsproducer.ZstdDictionaryStringSerializer
+        properties:
+          library-events.zstd.dictionary: classpath:library-events.zdict
+          library-events.zstd.level: 3
+*/
+public class ZstdDictionaryStringSerializer implements Serializer<String> {
+
+    public static final String DICTIONARY_ID_HEADER = "zstd-dict-id";
+    public static final String DICTIONARY_CONFIG = "library-events.zstd.dictionary";
+    public static final String LEVEL_CONFIG = "library-events.zstd.level";
+
+    private ZstdDictCompress dictionary;
+    private ZstdCompressCtx compressCtx;
+    private byte[] dictionaryIdHeader;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object location = configs.get(DICTIONARY_CONFIG);
+        if (location == null) {
+            throw new ConfigException(DICTIONARY_CONFIG + " is required by " + getClass().getSimpleName());
+        }
+        Object level = configs.get(LEVEL_CONFIG);
+
+        byte[] dictionaryBytes = loadDictionary(location.toString());
+        long dictionaryId = Zstd.getDictIdFromDict(dictionaryBytes);
+        if (dictionaryId == 0) {
+            throw new ConfigException(DICTIONARY_CONFIG, location, "not a trained zstd dictionary");
+        }
+
+        this.dictionary = new ZstdDictCompress(dictionaryBytes, level == null ? Zstd.defaultCompressionLevel() : Integer.parseInt(level.toString()));
+        this.compressCtx = new ZstdCompressCtx().loadDict(dictionary).setDictID(false).setContentSize(true);
+        this.dictionaryIdHeader = ByteBuffer.allocate(Integer.BYTES).putInt((int) dictionaryId).array();
+    }
+
+    // without the headers we can't tell the consumer which dictionary was used, so the value is left uncompressed.
+    @Override
+    public byte[] serialize(String topic, String data) {
+        return data == null ? null : data.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, String data) {
+        if (data == null) {
+            return null;
+        }
+        headers.remove(DICTIONARY_ID_HEADER);
+        headers.add(DICTIONARY_ID_HEADER, dictionaryIdHeader);
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        // the context is reused (it is not thread safe), the serializer is shared by all the threads sending through the KafkaTemplate.
+        synchronized (this) {
+            return compressCtx.compress(bytes);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (compressCtx != null) {
+            compressCtx.close();
+        }
+        if (dictionary != null) {
+            dictionary.close();
+        }
+    }
+
+    // "classpath:library-events.zdict" or a path on the file system.
+    private static byte[] loadDictionary(String location) {
+        try {
+            if (location.startsWith("classpath:")) {
+                String resource = location.substring("classpath:".length());
+                try (InputStream inputStream = ZstdDictionaryStringSerializer.class.getClassLoader().getResourceAsStream(resource)) {
+                    if (inputStream == null) {
+                        throw new ConfigException(DICTIONARY_CONFIG, location, "resource not found");
+                    }
+                    return inputStream.readAllBytes();
+                }
+            }
+            return Files.readAllBytes(Path.of(location));
+        } catch (IOException e) {
+            throw new ConfigException(DICTIONARY_CONFIG, location, "unable to read the dictionary : " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.CompressionType;
+import org.apache.kafka.common.record.MemoryRecords;
+import org.apache.kafka.common.record.Record;
+import org.apache.kafka.common.record.SimpleRecord;
+import producer.eventsproducer.LibraryEventDictionaryTrainer;
+import producer.eventsproducer.ZstdDictionaryStringSerializer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/*
+    Compares the bytes per event and the CPU time per event of :
+        none        -> plain JSON, no compression.
+        lz4 / zstd  -> plain JSON, compressed per batch by the Kafka producer (compression.type).
+        zstd-dict   -> every event compressed on its own with the trained dictionary (ZstdDictionaryStringSerializer), no batch compression.
+
+    The batches are built with the same MemoryRecords the Kafka producer uses, so the sizes include the record and batch overhead.
+    The batch size is the number of events per producer batch, library events are sent one by one from the REST endpoint,
+    so small batches are the common case.
+
+    Run from the library-events-producer module (this is not a unit test, surefire does not pick it up) :
+        mvn test-compile exec:java -Dexec.mainClass=benchmark.LibraryEventCompressionBenchmark -Dexec.classpathScope=test [-Dexec.args="<batch size>"]
+*/
+public class LibraryEventCompressionBenchmark {
+
+    private static final int EVENTS = 20_000;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws Exception {
+        int batchSize = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        // another seed than the trainer, the dictionary is measured on events it has not seen.
+        List<String> events = LibraryEventDictionaryTrainer.sampleEvents(objectMapper, EVENTS, 7);
+
+        ZstdDictionaryStringSerializer serializer = new ZstdDictionaryStringSerializer();
+        serializer.configure(Map.of(ZstdDictionaryStringSerializer.DICTIONARY_CONFIG, "classpath:library-events.zdict"), false);
+        byte[] dictionaryBytes;
+        try (InputStream inputStream = LibraryEventCompressionBenchmark.class.getClassLoader().getResourceAsStream("library-events.zdict")) {
+            dictionaryBytes = inputStream.readAllBytes();
+        }
+        ZstdDictDecompress dictionary = new ZstdDictDecompress(dictionaryBytes);
+        // same as the consumer's ZstdDictionaryStringDeserializer.
+        ZstdDecompressCtx decompressCtx = new ZstdDecompressCtx().loadDict(dictionary);
+
+        System.out.printf("%d events, %d events per batch, average JSON size %d bytes%n%n", EVENTS, batchSize,
+                events.stream().mapToInt(String::length).sum() / EVENTS);
+        System.out.printf("%-10s %15s %18s %18s%n", "codec", "bytes/event", "encode ns/event", "decode ns/event");
+
+        run("none", events, batchSize, CompressionType.NONE, null, null);
+        run("lz4", events, batchSize, CompressionType.LZ4, null, null);
+        run("zstd", events, batchSize, CompressionType.ZSTD, null, null);
+        run("zstd-dict", events, batchSize, CompressionType.NONE, serializer, decompressCtx);
+
+        serializer.close();
+        decompressCtx.close();
+        dictionary.close();
+    }
+
+    private static void run(String codec, List<String> events, int batchSize, CompressionType compressionType,
+                            ZstdDictionaryStringSerializer serializer, ZstdDecompressCtx decompressCtx) {
+        long bytes = 0;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        long checksum = 0;
+
+        // the first round is the warm up, it is not measured.
+        for (int round = 0; round <= ROUNDS; round++) {
+            long roundBytes = 0;
+            long encodeStart = System.nanoTime();
+            MemoryRecords[] batches = new MemoryRecords[(events.size() + batchSize - 1) / batchSize];
+            for (int batch = 0; batch < batches.length; batch++) {
+                List<String> batchEvents = events.subList(batch * batchSize, Math.min(events.size(), (batch + 1) * batchSize));
+                SimpleRecord[] records = new SimpleRecord[batchEvents.size()];
+                for (int i = 0; i < records.length; i++) {
+                    records[i] = record(batchEvents.get(i), serializer);
+                }
+                batches[batch] = MemoryRecords.withRecords(compressionType, records);
+                roundBytes += batches[batch].sizeInBytes();
+            }
+            long encodeEnd = System.nanoTime();
+
+            for (MemoryRecords batch : batches) {
+                for (Record record : batch.records()) {
+                    checksum += decode(record, decompressCtx).length();
+                }
+            }
+            long decodeEnd = System.nanoTime();
+
+            if (round > 0) {
+                bytes += roundBytes;
+                encodeNanos += encodeEnd - encodeStart;
+                decodeNanos += decodeEnd - encodeEnd;
+            }
+        }
+
+        long measured = (long) events.size() * ROUNDS;
+        System.out.printf("%-10s %15.1f %18d %18d%s%n", codec, (double) bytes / measured, encodeNanos / measured, decodeNanos / measured,
+                checksum == 0 ? " (no data)" : "");
+    }
+
+    private static SimpleRecord record(String event, ZstdDictionaryStringSerializer serializer) {
+        if (serializer == null) {
+            return new SimpleRecord(System.currentTimeMillis(), null, event.getBytes(StandardCharsets.UTF_8));
+        }
+        RecordHeaders headers = new RecordHeaders();
+        byte[] value = serializer.serialize("library-events", headers, event);
+        return new SimpleRecord(System.currentTimeMillis(), null, value, headers.toArray());
+    }
+
+    private static String decode(Record record, ZstdDecompressCtx decompressCtx) {
+        byte[] value = new byte[record.valueSize()];
+        record.value().get(value);
+        if (decompressCtx == null) {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+        Header[] headers = record.headers();
+        int dictionaryId = ByteBuffer.wrap(headers[0].value()).getInt();
+        if (dictionaryId == 0) {
+            throw new IllegalStateException("missing dictionary id");
+        }
+        return new String(decompressCtx.decompress(value, (int) Zstd.decompressedSize(value)), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.IntegerSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import producer.eventsproducer.LibraryEventDictionaryTrainer;
+import producer.eventsproducer.LibraryEventsSpool;
+import producer.eventsproducer.LibraryEventsSpoolReplayer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+    Replay throughput of the LibraryEventsSpoolReplayer (spooled library events per second sent back to Kafka),
+    for several replay batch sizes, against an embedded Kafka broker with the same producer settings as application.yml (acks=all).
+
+    Every run spools the same events (sample library events, see LibraryEventDictionaryTrainer), then times a single replay() call
+    that empties the spool.
+
+    Run from the library-events-producer module (this is not a unit test) :
+        mvn test-compile exec:java -Dexec.mainClass=benchmark.SpoolReplayBenchmark -Dexec.classpathScope=test [-Dexec.args="<events>"]
+*/
+public class SpoolReplayBenchmark {
+
+    private static final String TOPIC = "library-events";
+
+    public static void main(String[] args) throws Exception {
+        int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+
+        ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        List<String> events = LibraryEventDictionaryTrainer.sampleEvents(objectMapper, eventCount, 11);
+
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker(1, false, 3, TOPIC);
+        broker.afterPropertiesSet();
+        Map<String, Object> configs = Map.of(
+                ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, IntegerSerializer.class,
+                ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class,
+                ProducerConfig.ACKS_CONFIG, "all");
+        DefaultKafkaProducerFactory<Integer, String> producerFactory = new DefaultKafkaProducerFactory<>(configs);
+        KafkaTemplate<Integer, String> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+
+        try {
+            System.out.printf("%d spooled events, average size %d bytes%n%n", eventCount, events.stream().mapToInt(String::length).sum() / eventCount);
+            System.out.printf("%-12s %15s%n", "batch size", "events/s");
+            run(events, kafkaTemplate, 1000); // warm up, not measured.
+            for (int batchSize : new int[]{1, 10, 100, 1000, 5000}) {
+                System.out.printf("%-12d %15.0f%n", batchSize, run(events, kafkaTemplate, batchSize));
+            }
+        } finally {
+            producerFactory.destroy();
+            broker.destroy();
+        }
+    }
+
+    private static double run(List<String> events, KafkaTemplate<Integer, String> kafkaTemplate, int batchSize) throws Exception {
+        Path directory = Files.createTempDirectory("spool-replay-benchmark");
+        try (LibraryEventsSpool spool = new LibraryEventsSpool(directory, 64 * 1024 * 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            for (int i = 0; i < events.size(); i++) {
+                spool.append(i, events.get(i));
+            }
+            LibraryEventsSpoolReplayer replayer = new LibraryEventsSpoolReplayer(spool, kafkaTemplate, TOPIC, batchSize, 30_000, 1000);
+
+            long start = System.nanoTime();
+            replayer.replay();
+            long elapsed = System.nanoTime() - start;
+            if (!spool.isEmpty()) {
+                throw new IllegalStateException("The replay did not empty the spool");
+            }
+            return (double) events.size() / elapsed * TimeUnit.SECONDS.toNanos(1);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+}
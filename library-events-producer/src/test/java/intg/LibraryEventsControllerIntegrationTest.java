@@ -18,6 +18,7 @@ import org.springframework.kafka.test.EmbeddedKafkaBroker;
 import org.springframework.kafka.test.context.EmbeddedKafka;
 import org.springframework.kafka.test.utils.KafkaTestUtils;
 import org.springframework.test.context.TestPropertySource;
+import producer.LibraryEventsProducerApplication;
 import producer.dto.LibraryEvent;
 import util.TestUtil;
 
@@ -57,7 +58,7 @@ Note:
     succeeds after adding (@EmbeddedKafka / @TestPropertySource) without the local cluster.
 */
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(classes = LibraryEventsProducerApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @EmbeddedKafka(topics = {"library-events"}, partitions = 3)
 @TestPropertySource(properties = {"spring.kafka.producer.bootstrap-servers=${spring.embedded.kafka.brokers}",
                                    "spring.kafka.admin.properties.bootstrap.servers=${spring.embedded.kafka.brokers}"})
@@ -1,9 +1,17 @@
 package unit;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcProperties;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.env.Environment;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import producer.dto.LibraryEvent;
 import producer.eventsproducer.LibraryEventsProducer;
@@ -14,7 +22,15 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.context.ContextConfiguration;
+import producer.LibraryEventsProducerApplication;
 import producer.controller.LibraryEventsController;
+import producer.eventsproducer.LibraryEventSpooledException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /*
@@ -33,6 +49,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 */
 
 @WebMvcTest(LibraryEventsController.class)
+@ContextConfiguration(classes = LibraryEventsProducerApplication.class) // the tests are not in a sub-package of the application.
 class LibraryEventsControllerUnitTest {
 
     @Autowired
@@ -46,6 +63,12 @@ class LibraryEventsControllerUnitTest {
     @MockBean
     LibraryEventsProducer libraryEventsProducer;
 
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    WebMvcProperties webMvcProperties;
+
     @Test
     void postEventSuccess() throws Exception {
 
@@ -56,21 +79,102 @@ class LibraryEventsControllerUnitTest {
 
         // when
         // this is not going to load any Kafka components, you won't find any logs related to kafka in the console, because we are just testing the web layer (controller) and mock all other layers.
-        Mockito.when(libraryEventsProducer.sendLibraryEvent(ArgumentMatchers.isA(LibraryEvent.class))).thenReturn(null);
+        var recordMetadata = new RecordMetadata(new TopicPartition("library-events", 1), 41, 0, 0L, 0, 0);
+        var sendResult = new SendResult<>(new ProducerRecord<Integer, String>("library-events", json), recordMetadata);
+        Mockito.when(libraryEventsProducer.sendLibraryEvent(ArgumentMatchers.isA(LibraryEvent.class))).thenReturn(CompletableFuture.completedFuture(sendResult));
+
         //expect / then
-        mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent")
+        // the controller returns a CompletableFuture, so the request is started asynchronously and then dispatched once the send is completed.
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent")
                         .content(json)
                         .contentType(MediaType.APPLICATION_JSON))
-                        .andExpect(MockMvcResultMatchers.status().isCreated());
+                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                        .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                        .andExpect(MockMvcResultMatchers.status().isCreated())
+                        .andExpect(MockMvcResultMatchers.header().string(LibraryEventsController.PARTITION_HEADER, "1"))
+                        .andExpect(MockMvcResultMatchers.header().string(LibraryEventsController.OFFSET_HEADER, "41"));
+    }
+
+    @Test
+    void postEventSpooled_202() throws Exception {
+
+        // given : the send failed, but the event is in the spool.
+        var json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        Mockito.when(libraryEventsProducer.sendLibraryEvent(ArgumentMatchers.isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new LibraryEventSpooledException(null, new IllegalStateException("broker not available"))));
+
+        //expect / then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                        .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                        .andExpect(MockMvcResultMatchers.status().isAccepted())
+                        .andExpect(MockMvcResultMatchers.header().doesNotExist(LibraryEventsController.OFFSET_HEADER));
+    }
+
+    @Test
+    void postEventDeliveryTimedOut_202() throws Exception {
+
+        // given : the broker went down, kafka gave up on the send after delivery.timeout.ms, and the event was spooled.
+        var json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        Mockito.when(libraryEventsProducer.sendLibraryEvent(ArgumentMatchers.isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new LibraryEventSpooledException(null,
+                        new TimeoutException("Expiring 1 record(s) for library-events-0:20000 ms has passed since batch creation"))));
+
+        //expect / then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                        .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                        .andExpect(MockMvcResultMatchers.status().isAccepted());
+    }
+
+    @Test
+    void theSendTimesOutBeforeTheRequest() {
+
+        // the 202 above only happens if kafka gives up first, otherwise the request times out with a 503 while the event still ends up in the spool.
+        long maxBlockMs = environment.getRequiredProperty("spring.kafka.producer.properties.max.block.ms", Long.class);
+        long deliveryTimeoutMs = environment.getRequiredProperty("spring.kafka.producer.properties.delivery.timeout.ms", Long.class);
+        var requestTimeout = webMvcProperties.getAsync().getRequestTimeout();
+
+        assertTrue(requestTimeout != null && maxBlockMs + deliveryTimeoutMs < requestTimeout.toMillis(),
+                "max.block.ms + delivery.timeout.ms must be below spring.mvc.async.request-timeout");
+    }
+
+    @Test
+    void postEventNotSpooled_5xx() throws Exception {
+
+        // given : the send failed, and the append to the spool failed too.
+        var json = objectMapper.writeValueAsString(TestUtil.libraryEventRecord());
+        Mockito.when(libraryEventsProducer.sendLibraryEvent(ArgumentMatchers.isA(LibraryEvent.class)))
+                .thenReturn(CompletableFuture.failedFuture(new IOException("No space left on device")));
+
+        //expect / then
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.post("/v1/libraryevent")
+                        .content(json)
+                        .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(MockMvcResultMatchers.request().asyncStarted())
+                        .andReturn();
+
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                        .andExpect(MockMvcResultMatchers.status().is5xxServerError());
     }
 
     @Test
-    void postEventFailure_4xx() throws Exception {  // use .bookRecordWithInvalidValues() then .is4xxClientError() is expected
+    void postEventFailure_4xx() throws Exception {  // use .libraryEventRecordWithInvalidBook() then .is4xxClientError() is expected
 
         // given
         // here the json represent our request body.
-        var json = objectMapper.writeValueAsString(TestUtil.bookRecordWithInvalidValues());
-        var expectedErrorMessage = "book.bookId - must not be null, book.bookName - must not be blank";
+        var json = objectMapper.writeValueAsString(TestUtil.libraryEventRecordWithInvalidBook());
+        var expectedErrorMessage = "book.BookId - must not be null, book.bookName - must not be blank"; // the record component is BookId.
 
         // when
         // this is not going to load any Kafka components, you won't find any logs related to kafka in the console, because we are just testing the web layer (controller) and mock all other layers.
@@ -0,0 +1,109 @@
+package unit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import producer.dto.Book;
+import producer.dto.LibraryEvent;
+import producer.dto.LibraryEventType;
+import producer.eventsproducer.LibraryEventSpooledException;
+import producer.eventsproducer.LibraryEventsProducer;
+import producer.eventsproducer.LibraryEventsSpool;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryEventsProducerTest {
+
+    @TempDir
+    Path directory;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<Integer, String> kafkaTemplate = mock(KafkaTemplate.class);
+
+    private final LibraryEvent libraryEvent = new LibraryEvent(123, LibraryEventType.UPDATE, new Book(456, "Kafka Using Spring Boot", "Sawsaw"));
+
+    @Test
+    void aFailedSendIsSpooled() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            when(kafkaTemplate.send(eq("library-events"), eq(123), ArgumentMatchers.anyString()))
+                    .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker not available")));
+
+            // when
+            CompletableFuture<SendResult<Integer, String>> result = producer(spool).sendLibraryEvent(libraryEvent);
+
+            // then
+            var exception = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(LibraryEventSpooledException.class, exception.getCause());
+            var spooled = spool.peek(10);
+            assertEquals(1, spooled.size());
+            assertEquals(123, spooled.get(0).key());
+        }
+    }
+
+    @Test
+    void aFailedSendThatCantBeSpooledFailsWithTheSendFailure() throws Exception {
+
+        // given
+        var spool = mock(LibraryEventsSpool.class);
+        when(spool.isEmpty()).thenReturn(true);
+        doThrow(new IOException("No space left on device")).when(spool).append(eq(123), ArgumentMatchers.anyString());
+        when(kafkaTemplate.send(eq("library-events"), eq(123), ArgumentMatchers.anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("broker not available")));
+
+        // when
+        CompletableFuture<SendResult<Integer, String>> result = producer(spool).sendLibraryEvent(libraryEvent);
+
+        // then : not a LibraryEventSpooledException, the event is lost.
+        var exception = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+        assertInstanceOf(IOException.class, exception.getCause().getSuppressed()[0]);
+    }
+
+    @Test
+    void newEventsGoBehindTheSpooledOnes() throws Exception {
+
+        // given : an older event still waiting in the spool.
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            spool.append(123, "older update");
+
+            // when
+            CompletableFuture<SendResult<Integer, String>> result = producer(spool).sendLibraryEvent(libraryEvent);
+
+            // then : not sent to kafka, appended to the spool after the older one.
+            var exception = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(LibraryEventSpooledException.class, exception.getCause());
+            verify(kafkaTemplate, never()).send(ArgumentMatchers.anyString(), ArgumentMatchers.<Integer>any(), ArgumentMatchers.anyString());
+            var spooled = spool.peek(10);
+            assertEquals(2, spooled.size());
+            assertEquals("older update", spooled.get(0).value());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private LibraryEventsProducer producer(LibraryEventsSpool spool) {
+        ObjectProvider<LibraryEventsSpool> spoolProvider = mock(ObjectProvider.class);
+        when(spoolProvider.getIfAvailable()).thenReturn(spool);
+        var producer = new LibraryEventsProducer(kafkaTemplate, new ObjectMapper(), spoolProvider);
+        producer.topic = "library-events";
+        return producer;
+    }
+}
@@ -0,0 +1,96 @@
+package unit;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import producer.eventsproducer.LibraryEventsSpool;
+import producer.eventsproducer.LibraryEventsSpoolReplayer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LibraryEventsSpoolReplayerTest {
+
+    @TempDir
+    Path directory;
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<Integer, String> kafkaTemplate = mock(KafkaTemplate.class);
+
+    // what the mocked kafka template received, in order.
+    private final List<String> sent = new ArrayList<>();
+    private boolean kafkaDown;
+
+    @BeforeEach
+    void setUp() {
+        when(kafkaTemplate.send(eq("library-events"), ArgumentMatchers.<Integer>any(), ArgumentMatchers.anyString())).thenAnswer(invocation -> {
+            String value = invocation.getArgument(2);
+            if (kafkaDown) {
+                return CompletableFuture.failedFuture(new IllegalStateException("broker not available"));
+            }
+            sent.add(value);
+            var producerRecord = new ProducerRecord<Integer, String>("library-events", value);
+            return CompletableFuture.completedFuture(new SendResult<>(producerRecord, new RecordMetadata(new TopicPartition("library-events", 0), 0, 0, 0L, 0, 0)));
+        });
+    }
+
+    @Test
+    void replaysInOrderAndCommits() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            for (int i = 1; i <= 5; i++) {
+                spool.append(i, "event-" + i);
+            }
+            var replayer = new LibraryEventsSpoolReplayer(spool, kafkaTemplate, "library-events", 2, 1000, 1000);
+
+            // when
+            replayer.replay();
+
+            // then
+            assertEquals(List.of("event-1", "event-2", "event-3", "event-4", "event-5"), sent);
+            assertTrue(spool.isEmpty());
+        }
+    }
+
+    @Test
+    void aFailedBatchIsNotCommittedAndTheNextRunProbesWithOneEvent() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            for (int i = 1; i <= 5; i++) {
+                spool.append(i, "event-" + i);
+            }
+            var replayer = new LibraryEventsSpoolReplayer(spool, kafkaTemplate, "library-events", 10, 1000, 1000);
+
+            // when
+            kafkaDown = true;
+            replayer.replay();
+
+            // then : nothing committed.
+            assertEquals(5, spool.peek(10).size());
+
+            // when : kafka is back, a single event goes first, then the rest in batches.
+            kafkaDown = false;
+            replayer.replay();
+
+            // then
+            assertEquals(List.of("event-1", "event-2", "event-3", "event-4", "event-5"), sent);
+            assertTrue(spool.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package unit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import producer.eventsproducer.LibraryEventsSpool;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LibraryEventsSpoolTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void appendAndReplayInOrder() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.ALWAYS, 0, 0)) {
+            spool.append(null, "event-1");
+            spool.append(2, "event-2");
+
+            // when
+            var events = spool.peek(10);
+
+            // then
+            assertEquals(2, events.size());
+            assertNull(events.get(0).key());
+            assertEquals("event-1", events.get(0).value());
+            assertEquals(2, events.get(1).key());
+            assertEquals("event-2", events.get(1).value());
+
+            // once committed, the events are not returned anymore.
+            spool.commit(events.get(1));
+            assertTrue(spool.peek(10).isEmpty());
+        }
+    }
+
+    @Test
+    void replayContinuesFromTheCheckpointAfterARestart() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            for (int i = 1; i <= 3; i++) {
+                spool.append(i, "event-" + i);
+            }
+            spool.commit(spool.peek(1).get(0));
+        }
+
+        // when
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            spool.append(4, "event-4");
+            var events = spool.peek(10);
+
+            // then
+            assertEquals(3, events.size());
+            assertEquals("event-2", events.get(0).value());
+            assertEquals("event-4", events.get(2).value());
+        }
+    }
+
+    @Test
+    void segmentsRollAndAreDeletedOnceReplayed() throws Exception {
+
+        // given : every segment holds two events of this size.
+        var value = "x".repeat(30);
+        try (var spool = new LibraryEventsSpool(directory, 120, LibraryEventsSpool.FsyncPolicy.INTERVAL, 0, 0)) {
+            for (int i = 0; i < 6; i++) {
+                spool.append(i, value);
+            }
+            assertEquals(3, segmentCount());
+
+            // when
+            var events = spool.peek(100);
+            spool.commit(events.get(events.size() - 1));
+
+            // then
+            assertEquals(6, events.size());
+            assertEquals(1, segmentCount());
+        }
+    }
+
+    @Test
+    void retentionDropsTheOldestSegments() throws Exception {
+
+        // given
+        var value = "x".repeat(30);
+        try (var spool = new LibraryEventsSpool(directory, 120, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 240)) {
+            for (int i = 0; i < 6; i++) {
+                spool.append(i, value);
+            }
+
+            // when
+            spool.enforceRetention();
+
+            // then : only the last two segments are kept, and the replay starts from the oldest one left.
+            assertEquals(2, segmentCount());
+            assertEquals(4, spool.peek(100).size());
+            assertEquals(2, spool.peek(1).get(0).key());
+        }
+    }
+
+    @Test
+    void aTornRecordIsDroppedWhenTheSpoolIsReopened() throws Exception {
+
+        // given : three events, then the second one is damaged like a write cut in the middle by a crash.
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.ALWAYS, 0, 0)) {
+            for (int i = 1; i <= 3; i++) {
+                spool.append(i, "event-" + i);
+            }
+        }
+        // record = length (4) + crc (4) + timestamp (8) + hasKey (1) + key (4) + "event-N" (7) = 28 bytes, the second value starts at 28 + 21.
+        try (var channel = FileChannel.open(directory.resolve(String.format("%020d.log", 0)), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{'X'}), 28 + 21);
+        }
+
+        // when
+        try (var spool = new LibraryEventsSpool(directory, 1024, LibraryEventsSpool.FsyncPolicy.ALWAYS, 0, 0)) {
+
+            // then : the crc check stops at the torn record, nothing after it is trusted.
+            var events = spool.peek(10);
+            assertEquals(1, events.size());
+            assertEquals("event-1", events.get(0).value());
+
+            // and the next append overwrites the torn record.
+            spool.append(4, "event-4");
+            events = spool.peek(10);
+            assertEquals(2, events.size());
+            assertEquals("event-4", events.get(1).value());
+        }
+    }
+
+    @Test
+    void isEmptyOnceEverythingIsCommitted() throws Exception {
+
+        // given
+        try (var spool = new LibraryEventsSpool(directory, 120, LibraryEventsSpool.FsyncPolicy.NEVER, 0, 0)) {
+            assertTrue(spool.isEmpty());
+            for (int i = 0; i < 3; i++) {
+                spool.append(i, "x".repeat(30));
+            }
+            assertFalse(spool.isEmpty());
+
+            // when
+            var events = spool.peek(100);
+            spool.commit(events.get(events.size() - 1));
+
+            // then
+            assertTrue(spool.isEmpty());
+        }
+    }
+
+    private long segmentCount() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.toString().endsWith(".log")).count();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package unit;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictDecompress;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import producer.eventsproducer.ZstdDictionaryStringSerializer;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ZstdDictionaryStringSerializerTest {
+
+    private static final String EVENT = "{\"LibraryEventId\":null,\"libraryEventType\":\"NEW\",\"book\":{\"BookId\":123,\"bookName\":\"Kafka Using Spring Boot\",\"bookAuthor\":\"Sawsaw\"}}";
+
+    private final ZstdDictionaryStringSerializer serializer = new ZstdDictionaryStringSerializer();
+    private byte[] dictionaryBytes;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        serializer.configure(Map.of(ZstdDictionaryStringSerializer.DICTIONARY_CONFIG, "classpath:library-events.zdict"), false);
+        try (InputStream inputStream = getClass().getClassLoader().getResourceAsStream("library-events.zdict")) {
+            dictionaryBytes = inputStream.readAllBytes();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        serializer.close();
+    }
+
+    @Test
+    void compressWithTheDictionaryAndAddTheDictionaryIdHeader() {
+
+        // given
+        var headers = new RecordHeaders();
+
+        // when
+        byte[] value = serializer.serialize("library-events", headers, EVENT);
+
+        // then
+        var header = headers.lastHeader(ZstdDictionaryStringSerializer.DICTIONARY_ID_HEADER);
+        assertNotNull(header);
+        assertEquals(Zstd.getDictIdFromDict(dictionaryBytes), ByteBuffer.wrap(header.value()).getInt());
+        assertTrue(value.length < EVENT.length());
+
+        try (var dictionary = new ZstdDictDecompress(dictionaryBytes)) {
+            var decompressed = Zstd.decompress(value, dictionary, (int) Zstd.decompressedSize(value));
+            assertEquals(EVENT, new String(decompressed, StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void plainValueWithoutHeaders() {
+        assertArrayEquals(EVENT.getBytes(StandardCharsets.UTF_8), serializer.serialize("library-events", EVENT));
+    }
+}
@@ -0,0 +1,46 @@
+package startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+
+/*
+    Used by the class-data sharing training run of the fast-startup build profile (see the parent pom.xml) :
+    with library-events.startup.exit-on-ready=true the application runs its StartupTrainingWorkload beans as soon as it is ready,
+    then exits, and the JVM writes the classes it loaded so far into the archive.
+
+    Registered in META-INF/spring.factories rather than as a @Component, it doesn't depend on the component scan of the application.
+    The property is read at runtime on purpose, a @ConditionalOnProperty would be fixed at build time by the AOT processing.
+*/
+@Slf4j
+public class StartupTrainingRunListener implements ApplicationListener<ApplicationReadyEvent> {
+
+    public static final String EXIT_ON_READY = "library-events.startup.exit-on-ready";
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        log.info("Application ready {} ms after the JVM started", ManagementFactory.getRuntimeMXBean().getUptime());
+
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        if (!context.getEnvironment().getProperty(EXIT_ON_READY, Boolean.class, false)) {
+            return;
+        }
+        int exitCode = 0;
+        for (StartupTrainingWorkload workload : context.getBeanProvider(StartupTrainingWorkload.class).orderedStream().toList()) {
+            try {
+                log.info("Training run : {}", workload.getClass().getSimpleName());
+                workload.train();
+            } catch (Exception e) {
+                log.error("Training run : {} failed", workload.getClass().getSimpleName(), e);
+                exitCode = 1;
+            }
+        }
+        log.info("Training run is over, exiting");
+        int finalExitCode = exitCode;
+        System.exit(SpringApplication.exit(context, () -> finalExitCode));
+    }
+}
@@ -0,0 +1,12 @@
+package startup;
+
+/*
+    Work done by the class-data sharing training run once the application is ready and before it exits (see StartupTrainingRunListener),
+    so the classes of the first request / first record are in the archive too, not only the classes of the startup.
+
+    Runs in the training run only, against the default (local) profile of the build : it must not need a broker.
+*/
+public interface StartupTrainingWorkload {
+
+    void train() throws Exception;
+}